@@ -0,0 +1,344 @@
+import java.util.*;
+
+/**
+ * Actor-movie graph that stores only actor->movies and movie->actors adjacency in CSR form.
+ * Seen through the Graph interface it is the co-star graph: two actors are adjacent when they share
+ * a movie, and the label of that edge is the sorted array of shared movie ids. Co-star edges are worked out
+ * on demand instead of materializing a clique per movie, so memory is linear in the cast lists.
+ * @author William Toth and Christopher Long
+ */
+
+public class BipartiteGraph<V> implements IndexedGraph<V, int[]> {
+	protected SymbolTable<V> actors;		// actor <-> id
+	protected int numMovies;
+	protected int[] castOffsets;			// cast of movie m: castMembers[castOffsets[m] .. castOffsets[m+1])
+	protected int[] castMembers;			// actor ids, sorted within each movie
+	protected int[] filmOffsets;			// movies of actor a: films[filmOffsets[a] .. filmOffsets[a+1])
+	protected int[] films;				// movie ids, sorted within each actor
+	protected int[] degrees;				// number of distinct co-stars of each actor
+	protected long numEdges;				// directed co-star edges (twice the undirected count)
+
+	/**
+	 * Builds the graph from casts grouped by movie
+	 * @param actors dictionary of actor ids
+	 * @param numMovies
+	 * @param castOffsets cast of movie m is castMembers[castOffsets[m] .. castOffsets[m+1])
+	 * @param castMembers actor ids, sorted and without repeats within each movie
+	 */
+	public BipartiteGraph(SymbolTable<V> actors, int numMovies, int[] castOffsets, int[] castMembers) {
+		this.actors = actors;
+		this.numMovies = numMovies;
+		this.castOffsets = castOffsets;
+		this.castMembers = castMembers;
+		invertCasts();
+
+		// count distinct co-stars once so degree queries are O(1)
+		int n = actors.size();
+		degrees = new int[n];
+		int[] owner = new int[n];			// last actor (plus one) that counted each co-star
+		for (int a = 0; a < n; a++) {
+			degrees[a] = countCoStars(a, owner);
+			numEdges += degrees[a];
+		}
+	}
+
+	/**
+	 * Inverts the casts to get the movies of each actor (movie ids come out sorted)
+	 */
+	private void invertCasts() {
+		int n = actors.size();
+		filmOffsets = new int[n + 1];
+		for (int actor : castMembers) filmOffsets[actor + 1]++;
+		for (int a = 0; a < n; a++) filmOffsets[a + 1] += filmOffsets[a];
+		films = new int[castMembers.length];
+		int[] next = Arrays.copyOf(filmOffsets, n);
+		for (int m = 0; m < numMovies; m++) {
+			for (int i = castOffsets[m]; i < castOffsets[m + 1]; i++) films[next[castMembers[i]]++] = m;
+		}
+	}
+
+	/**
+	 * Number of distinct co-stars of an actor
+	 * @param a
+	 * @param owner scratch array over actor ids; entries equal to a+1 mark co-stars already counted
+	 * @return
+	 */
+	private int countCoStars(int a, int[] owner) {
+		int count = 0;
+		for (int f = filmOffsets[a]; f < filmOffsets[a + 1]; f++) {
+			int m = films[f];
+			for (int i = castOffsets[m]; i < castOffsets[m + 1]; i++) {
+				int b = castMembers[i];
+				if (b != a && owner[b] != a + 1) {
+					owner[b] = a + 1;
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Replaces the cast of a movie, or adds a movie when movie == numMovies(). Actors added to the dictionary
+	 * since the graph was built get rows of their own. Only the degrees of the old and new cast members
+	 * are recounted.
+	 * @param movie
+	 * @param cast actor ids, sorted and without repeats
+	 */
+	public void setCast(int movie, int[] cast) {
+		int[] old = movie < numMovies ? Arrays.copyOfRange(castMembers, castOffsets[movie], castOffsets[movie + 1]) : new int[0];
+		int[][] spliced = spliceRow(castOffsets, castMembers, movie, cast);
+		castOffsets = spliced[0];
+		castMembers = spliced[1];
+		numMovies = castOffsets.length - 1;
+		invertCasts();
+		int n = actors.size();
+		degrees = Arrays.copyOf(degrees, n);
+		int[] owner = new int[n];
+		for (int i = 0, j = 0; i < old.length || j < cast.length; ) {	// merge the two sorted casts, counting each actor once
+			int a;
+			if (j == cast.length || (i < old.length && old[i] < cast[j])) a = old[i++];
+			else if (i == old.length || cast[j] < old[i]) a = cast[j++];
+			else {	// in both casts
+				a = old[i++];
+				j++;
+			}
+			numEdges -= degrees[a];
+			degrees[a] = countCoStars(a, owner);
+			numEdges += degrees[a];
+		}
+	}
+
+	/**
+	 * Copies CSR arrays with one row replaced, or with a row appended when row is the number of rows
+	 * @param offsets row r is values[offsets[r] .. offsets[r+1])
+	 * @param values
+	 * @param row
+	 * @param replacement
+	 * @return the new offsets and values
+	 */
+	static int[][] spliceRow(int[] offsets, int[] values, int row, int[] replacement) {
+		int rows = Math.max(offsets.length - 1, row + 1);
+		int start = offsets[Math.min(row, offsets.length - 1)];
+		int end = row < offsets.length - 1 ? offsets[row + 1] : start;
+		int shift = replacement.length - (end - start);
+		int[] newOffsets = Arrays.copyOf(offsets, rows + 1);
+		for (int r = row + 1; r <= rows; r++) newOffsets[r] = (r < offsets.length ? offsets[r] : end) + shift;
+		int[] newValues = new int[values.length + shift];
+		System.arraycopy(values, 0, newValues, 0, start);
+		System.arraycopy(replacement, 0, newValues, start, replacement.length);
+		System.arraycopy(values, end, newValues, start + replacement.length, values.length - end);
+		return new int[][] {newOffsets, newValues};
+	}
+
+	/**
+	 * Expands every movie into a clique of co-star edges, giving the equivalent CompactGraph.
+	 * Labels are interned, so both directions of an edge and all edges with the same shared movies use one array.
+	 * @return
+	 */
+	public CompactGraph<V, int[]> project() {
+		return project(new LabelStore());
+	}
+
+	/**
+	 * Expands every movie into a clique of co-star edges, interning labels in the given store
+	 * @param store
+	 * @return
+	 */
+	public CompactGraph<V, int[]> project(LabelStore store) {
+		int n = actors.size();
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[(int) numEdges];
+		int[][] labels = new int[(int) numEdges][];
+		int[] slot = new int[n];			// position of a co-star in the current row
+		int[] owner = new int[n];			// row that slot belongs to (plus one, so zero means none)
+		int[] shared = new int[0];		// shared movies of every edge in the current row, grouped by edge
+		int[] sharedEnd = new int[0];		// where each edge's group ends while it is being filled
+		int edges = 0;
+		for (int a = 0; a < n; a++) {
+			// first pass: find the co-stars and count the movies shared with each
+			int start = edges, credits = 0;
+			for (int f = filmOffsets[a]; f < filmOffsets[a + 1]; f++) {
+				int movie = films[f];
+				for (int i = castOffsets[movie]; i < castOffsets[movie + 1]; i++) {
+					int b = castMembers[i];
+					if (b == a) continue;
+					if (owner[b] != a + 1) {	// first movie shared with b, so start a new edge
+						owner[b] = a + 1;
+						slot[b] = edges - start;
+						targets[edges++] = b;
+						if (sharedEnd.length < edges - start) sharedEnd = Arrays.copyOf(sharedEnd, (edges - start) * 2);
+						sharedEnd[slot[b]] = 0;
+					}
+					sharedEnd[slot[b]]++;
+					credits++;
+				}
+			}
+			// turn the counts into group starts, then a second pass drops each movie into its group (in movie order)
+			if (shared.length < credits) shared = new int[credits * 2];
+			for (int e = 0, total = 0; e < edges - start; e++) {
+				int count = sharedEnd[e];
+				sharedEnd[e] = total;
+				total += count;
+			}
+			for (int f = filmOffsets[a]; f < filmOffsets[a + 1]; f++) {
+				int movie = films[f];
+				for (int i = castOffsets[movie]; i < castOffsets[movie + 1]; i++) {
+					int b = castMembers[i];
+					if (b != a) shared[sharedEnd[slot[b]]++] = movie;
+				}
+			}
+			for (int e = start; e < edges; e++) {
+				int local = slot[targets[e]];
+				int from = local == 0 ? 0 : sharedEnd[local - 1];
+				labels[e] = store.intern(shared, from, sharedEnd[local]);
+			}
+			offsets[a + 1] = edges;
+		}
+		return CompactGraph.fromRows(actors, offsets, targets, labels);
+	}
+
+	public int numMovies() {
+		return numMovies;
+	}
+
+	/**
+	 * Number of edges in the actor-movie graph (one per cast credit), as opposed to co-star edges
+	 * @return
+	 */
+	public int numCredits() {
+		return castMembers.length;
+	}
+
+	public int indexOf(V v) {
+		return actors.indexOf(v);
+	}
+
+	public V vertexAt(int id) {
+		return actors.symbol(id);
+	}
+
+	public int outDegreeAt(int u) {
+		return degrees[u];
+	}
+
+	/**
+	 * Sorted ids of the movies both actors appeared in, or null if they never appeared together
+	 */
+	public int[] labelBetween(int u, int v) {
+		if (u == v) return null;
+		int[] shared = new int[Math.min(filmOffsets[u + 1] - filmOffsets[u], filmOffsets[v + 1] - filmOffsets[v])];
+		int count = 0;
+		int i = filmOffsets[u], j = filmOffsets[v];
+		while (i < filmOffsets[u + 1] && j < filmOffsets[v + 1]) {
+			if (films[i] < films[j]) i++;
+			else if (films[i] > films[j]) j++;
+			else {
+				shared[count++] = films[i];
+				i++;
+				j++;
+			}
+		}
+		return count == 0 ? null : Arrays.copyOf(shared, count);
+	}
+
+	/**
+	 * Ids of the distinct co-stars of an actor, in increasing order
+	 * @param u
+	 * @return
+	 */
+	public int[] coStars(int u) {
+		int[] result = new int[degrees[u]];
+		BitSet seen = new BitSet();
+		int k = 0;
+		for (int f = filmOffsets[u]; f < filmOffsets[u + 1]; f++) {
+			int m = films[f];
+			for (int i = castOffsets[m]; i < castOffsets[m + 1]; i++) {
+				int b = castMembers[i];
+				if (b != u && !seen.get(b)) {
+					seen.set(b);
+					result[k++] = b;
+				}
+			}
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	public int numVertices() {
+		return actors.size();
+	}
+
+	public int numEdges() {
+		return (int) numEdges;
+	}
+
+	public Iterable<V> vertices() {
+		return actors.symbols();
+	}
+
+	public boolean hasVertex(V v) {
+		return actors.contains(v);
+	}
+
+	public int outDegree(V v) {
+		return degrees[actors.indexOf(v)];
+	}
+
+	public int inDegree(V v) {
+		return outDegree(v);	// co-starring is symmetric
+	}
+
+	public Iterable<V> outNeighbors(V v) {
+		List<V> neighbors = new ArrayList<V>();
+		for (int b : coStars(actors.indexOf(v))) neighbors.add(actors.symbol(b));
+		return neighbors;
+	}
+
+	public Iterable<V> inNeighbors(V v) {
+		return outNeighbors(v);
+	}
+
+	public boolean hasEdge(V u, V v) {
+		int a = actors.indexOf(u), b = actors.indexOf(v);
+		return a >= 0 && b >= 0 && labelBetween(a, b) != null;
+	}
+
+	public int[] getLabel(V u, V v) {
+		int a = actors.indexOf(u), b = actors.indexOf(v);
+		if (a < 0 || b < 0) return null;
+		return labelBetween(a, b);
+	}
+
+	public void insertVertex(V v) {
+		throw new UnsupportedOperationException("BipartiteGraph is read-only");
+	}
+
+	public void insertDirected(V u, V v, int[] e) {
+		throw new UnsupportedOperationException("BipartiteGraph is read-only");
+	}
+
+	public void insertUndirected(V u, V v, int[] e) {
+		throw new UnsupportedOperationException("BipartiteGraph is read-only");
+	}
+
+	public void removeVertex(V v) {
+		throw new UnsupportedOperationException("BipartiteGraph is read-only");
+	}
+
+	public void removeDirected(V u, V v) {
+		throw new UnsupportedOperationException("BipartiteGraph is read-only");
+	}
+
+	public void removeUndirected(V u, V v) {
+		throw new UnsupportedOperationException("BipartiteGraph is read-only");
+	}
+
+	/**
+	 * Returns a string representation of the actor and movie counts.
+	 */
+	public String toString() {
+		return "Actors: " + actors.size() + ", movies: " + numMovies + ", credits: " + castMembers.length +
+				", co-star edges: " + numEdges;
+	}
+}
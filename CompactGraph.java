@@ -0,0 +1,359 @@
+import java.util.*;
+
+/**
+ * Read-optimized graph in compressed sparse row (CSR) form.
+ * Vertices are numbered 0..n-1 and the out edges of vertex u live in
+ * outTargets[outOffsets[u] .. outOffsets[u+1]), sorted by target id.
+ * Built once with freeze() or fromRows(); edits are spliced in with updateEdges(), and the
+ * Graph mutators are unsupported.
+ * @author William Toth and Christopher Long
+ */
+
+public class CompactGraph<V,E> implements IndexedGraph<V,E> {
+	protected SymbolTable<V> dictionary;	// vertex <-> id
+	protected int[] outOffsets;			// out edges of u: outTargets[outOffsets[u] .. outOffsets[u+1])
+	protected int[] outTargets;			// target id of each out edge
+	protected E[] outLabels;				// label of each out edge (parallel to outTargets)
+	protected int[] inOffsets;			// in edges of v: inSources[inOffsets[v] .. inOffsets[v+1])
+	protected int[] inSources;			// source id of each in edge
+
+	/**
+	 * Builds a compact copy of a graph. Vertex ids are assigned in the order of source.vertices().
+	 * @param source
+	 * @param <V>
+	 * @param <E>
+	 * @return
+	 */
+	public static <V,E> CompactGraph<V,E> freeze(Graph<V,E> source) {
+		SymbolTable<V> dictionary = new SymbolTable<V>();
+		for (V v : source.vertices()) dictionary.intern(v);
+		return freeze(source, dictionary);
+	}
+
+	/**
+	 * Builds a compact copy of a graph whose vertex ids come from an existing symbol table,
+	 * so ids handed out by the table can be used directly against the graph.
+	 * Every vertex of source must already be in the dictionary.
+	 * @param source
+	 * @param dictionary
+	 * @param <V>
+	 * @param <E>
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <V,E> CompactGraph<V,E> freeze(Graph<V,E> source, SymbolTable<V> dictionary) {
+		int n = dictionary.size();
+		int[] offsets = new int[n + 1];
+		for (int u = 0; u < n; u++) {
+			V v = dictionary.symbol(u);
+			offsets[u + 1] = offsets[u] + (source.hasVertex(v) ? source.outDegree(v) : 0);
+		}
+		int[] targets = new int[offsets[n]];
+		E[] labels = (E[]) new Object[offsets[n]];
+		for (int u = 0; u < n; u++) {
+			V v = dictionary.symbol(u);
+			if (!source.hasVertex(v)) continue;
+			int e = offsets[u];
+			for (V w : source.outNeighbors(v)) {
+				targets[e] = dictionary.indexOf(w);
+				labels[e++] = source.getLabel(v, w);
+			}
+		}
+		return fromRows(dictionary, offsets, targets, labels);
+	}
+
+	/**
+	 * Builds a graph directly from CSR arrays over the ids of a dictionary.
+	 * Rows do not need to be sorted; the arrays are taken over, not copied.
+	 * @param dictionary
+	 * @param offsets out edges of u are targets[offsets[u] .. offsets[u+1])
+	 * @param targets
+	 * @param labels label of each edge, parallel to targets
+	 * @param <V>
+	 * @param <E>
+	 * @return
+	 */
+	public static <V,E> CompactGraph<V,E> fromRows(SymbolTable<V> dictionary, int[] offsets, int[] targets, E[] labels) {
+		CompactGraph<V,E> g = new CompactGraph<V,E>();
+		g.dictionary = dictionary;
+		g.outOffsets = offsets;
+		g.outTargets = targets;
+		g.outLabels = labels;
+		g.sortRows();
+		g.buildInEdges();
+		return g;
+	}
+
+	/**
+	 * Sorts every out-row by target id, moving labels along with their targets
+	 */
+	protected void sortRows() {
+		long[] keys = new long[0];
+		for (int u = 0; u + 1 < outOffsets.length; u++) {
+			int start = outOffsets[u], degree = outOffsets[u + 1] - start;
+			boolean sorted = true;
+			for (int e = start + 1; e < start + degree && sorted; e++) sorted = outTargets[e - 1] < outTargets[e];
+			if (sorted) continue;
+			if (keys.length < degree) keys = new long[degree];
+			for (int i = 0; i < degree; i++) {
+				keys[i] = ((long) outTargets[start + i] << 32) | i; // target id in the high bits, position in the low bits
+			}
+			Arrays.sort(keys, 0, degree);
+			E[] labels = Arrays.copyOfRange(outLabels, start, start + degree);
+			for (int i = 0; i < degree; i++) {
+				outTargets[start + i] = (int) (keys[i] >>> 32);
+				outLabels[start + i] = labels[(int) keys[i]];
+			}
+		}
+	}
+
+	/**
+	 * Derives the in-edge arrays by transposing the out edges.
+	 * Scanning sources in id order leaves every in-row sorted.
+	 * Undirected graphs share the out arrays instead of storing a second copy.
+	 */
+	protected void buildInEdges() {
+		int n = dictionary.size();
+		inOffsets = new int[n + 1];
+		for (int e = 0; e < outTargets.length; e++) inOffsets[outTargets[e] + 1]++;
+		for (int v = 0; v < n; v++) inOffsets[v + 1] += inOffsets[v];
+		inSources = new int[outTargets.length];
+		int[] next = Arrays.copyOf(inOffsets, n);
+		for (int u = 0; u < n; u++) {
+			for (int e = outOffsets[u]; e < outOffsets[u + 1]; e++) {
+				inSources[next[outTargets[e]]++] = u;
+			}
+		}
+		if (Arrays.equals(inOffsets, outOffsets) && Arrays.equals(inSources, outTargets)) {
+			inOffsets = outOffsets;
+			inSources = outTargets;
+		}
+	}
+
+	/**
+	 * Splices a batch of edge changes into the CSR arrays. Change i sets the label of edge (sources[i], targets[i]),
+	 * adding the edge if it is missing, or removes the edge if labels[i] is null; a later change to the same
+	 * edge wins. Vertices added to the dictionary since the graph was built get rows of their own.
+	 * Rows without changes are copied as they are, so a batch costs one pass over the edge arrays.
+	 * @param sources
+	 * @param targets
+	 * @param labels
+	 */
+	public void updateEdges(int[] sources, int[] targets, E[] labels) {
+		int n = dictionary.size(), oldN = outOffsets.length - 1;
+		long[] bySource = new long[sources.length];
+		for (int i = 0; i < sources.length; i++) bySource[i] = ((long) sources[i] << 32) | i; // source id in the high bits, change in the low bits
+		Arrays.sort(bySource);
+		int[] offsets = new int[n + 1];
+		int[] newTargets = new int[outTargets.length + sources.length];
+		E[] newLabels = Arrays.copyOf(outLabels, newTargets.length);	// keeps the runtime type of the label array
+		long[] byTarget = new long[0];
+		int size = 0, next = 0;
+		for (int u = 0; u < n; u++) {
+			int from = u < oldN ? outOffsets[u] : 0, to = u < oldN ? outOffsets[u + 1] : 0;
+			int count = 0;
+			while (next + count < bySource.length && (int) (bySource[next + count] >>> 32) == u) count++;
+			if (count > 0) {
+				// merge the row's changes, sorted by target, into its old edges
+				if (byTarget.length < count) byTarget = new long[count];
+				for (int c = 0; c < count; c++) {
+					int i = (int) bySource[next + c];
+					byTarget[c] = ((long) targets[i] << 32) | i;
+				}
+				Arrays.sort(byTarget, 0, count);
+				for (int c = 0; c < count; c++) {
+					if (c + 1 < count && (byTarget[c + 1] >>> 32) == (byTarget[c] >>> 32)) continue;
+					int v = (int) (byTarget[c] >>> 32), i = (int) byTarget[c];
+					while (from < to && outTargets[from] < v) {
+						newTargets[size] = outTargets[from];
+						newLabels[size++] = outLabels[from++];
+					}
+					if (from < to && outTargets[from] == v) from++;	// replaced or removed
+					if (labels[i] != null) {
+						newTargets[size] = v;
+						newLabels[size++] = labels[i];
+					}
+				}
+				next += count;
+			}
+			System.arraycopy(outTargets, from, newTargets, size, to - from);
+			System.arraycopy(outLabels, from, newLabels, size, to - from);
+			size += to - from;
+			offsets[u + 1] = size;
+		}
+		outOffsets = offsets;
+		outTargets = Arrays.copyOf(newTargets, size);
+		outLabels = Arrays.copyOf(newLabels, size);
+		buildInEdges();
+	}
+
+	/**
+	 * Id of a vertex, or -1 if it is not in the graph
+	 * @param v
+	 * @return
+	 */
+	public int indexOf(V v) {
+		return dictionary.indexOf(v);
+	}
+
+	/**
+	 * Vertex with the given id
+	 * @param id
+	 * @return
+	 */
+	public V vertexAt(int id) {
+		return dictionary.symbol(id);
+	}
+
+	/**
+	 * Number of out edges of the vertex with the given id
+	 * @param u
+	 * @return
+	 */
+	public int outDegreeAt(int u) {
+		return outOffsets[u + 1] - outOffsets[u];
+	}
+
+	/**
+	 * Label of the edge at a position returned by findEdge
+	 * @param e
+	 * @return
+	 */
+	public E labelAt(int e) {
+		return outLabels[e];
+	}
+
+	public E labelBetween(int u, int v) {
+		int e = findEdge(u, v);
+		return e < 0 ? null : outLabels[e];
+	}
+
+	/**
+	 * Position of edge (u, v) in the out-edge arrays, or -1 if there is no such edge
+	 * @param u
+	 * @param v
+	 * @return
+	 */
+	public int findEdge(int u, int v) {
+		int i = Arrays.binarySearch(outTargets, outOffsets[u], outOffsets[u + 1], v);
+		return i < 0 ? -1 : i;
+	}
+
+	public int numVertices() {
+		return dictionary.size();
+	}
+
+	public int numEdges() {
+		return outTargets.length;
+	}
+
+	public Iterable<V> vertices() {
+		return dictionary.symbols();
+	}
+
+	public boolean hasVertex(V v) {
+		return dictionary.contains(v);
+	}
+
+	public int outDegree(V v) {
+		int u = dictionary.indexOf(v);
+		return outOffsets[u + 1] - outOffsets[u];
+	}
+
+	public int inDegree(V v) {
+		int u = dictionary.indexOf(v);
+		return inOffsets[u + 1] - inOffsets[u];
+	}
+
+	public Iterable<V> outNeighbors(V v) {
+		int u = dictionary.indexOf(v);
+		return new VertexRange(outTargets, outOffsets[u], outOffsets[u + 1]);
+	}
+
+	public Iterable<V> inNeighbors(V v) {
+		int u = dictionary.indexOf(v);
+		return new VertexRange(inSources, inOffsets[u], inOffsets[u + 1]);
+	}
+
+	public boolean hasEdge(V u, V v) {
+		int a = dictionary.indexOf(u), b = dictionary.indexOf(v);
+		return a >= 0 && b >= 0 && findEdge(a, b) >= 0;
+	}
+
+	public E getLabel(V u, V v) {
+		int a = dictionary.indexOf(u), b = dictionary.indexOf(v);
+		if (a < 0 || b < 0) return null;
+		int e = findEdge(a, b);
+		return e < 0 ? null : outLabels[e];
+	}
+
+	public void insertVertex(V v) {
+		throw new UnsupportedOperationException("CompactGraph is read-only");
+	}
+
+	public void insertDirected(V u, V v, E e) {
+		throw new UnsupportedOperationException("CompactGraph is read-only");
+	}
+
+	public void insertUndirected(V u, V v, E e) {
+		throw new UnsupportedOperationException("CompactGraph is read-only");
+	}
+
+	public void removeVertex(V v) {
+		throw new UnsupportedOperationException("CompactGraph is read-only");
+	}
+
+	public void removeDirected(V u, V v) {
+		throw new UnsupportedOperationException("CompactGraph is read-only");
+	}
+
+	public void removeUndirected(V u, V v) {
+		throw new UnsupportedOperationException("CompactGraph is read-only");
+	}
+
+	/**
+	 * Returns a string representation of the vertex and edge lists.
+	 */
+	public String toString() {
+		StringBuilder edges = new StringBuilder("{");
+		for (int u = 0; u < dictionary.size(); u++) {
+			if (u > 0) edges.append(", ");
+			edges.append(dictionary.symbol(u)).append("={");
+			for (int e = outOffsets[u]; e < outOffsets[u + 1]; e++) {
+				if (e > outOffsets[u]) edges.append(", ");
+				edges.append(dictionary.symbol(outTargets[e])).append('=').append(outLabels[e]);
+			}
+			edges.append('}');
+		}
+		return "Vertices: " + dictionary + "\nOut edges: " + edges.append('}');
+	}
+
+	/**
+	 * Iterable view of a slice of an id array, mapped back to vertices
+	 */
+	private class VertexRange implements Iterable<V> {
+		private final int[] targets;
+		private final int start, end;
+
+		VertexRange(int[] targets, int start, int end) {
+			this.targets = targets;
+			this.start = start;
+			this.end = end;
+		}
+
+		public Iterator<V> iterator() {
+			return new Iterator<V>() {
+				int i = start;
+
+				public boolean hasNext() {
+					return i < end;
+				}
+
+				public V next() {
+					if (i >= end) throw new NoSuchElementException();
+					return dictionary.symbol(targets[i++]);
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,272 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Connected components of a graph (weakly connected, if it is directed), found by a union-find over the edge set.
+ * Edges are unioned in parallel: roots are linked with compare-and-set, always from the larger id to the
+ * smaller, and finds halve their paths as they go. Every vertex gets a component number (components are
+ * numbered in order of their smallest member) and each component's members are kept in one slice of an array,
+ * so reachability questions are lookups rather than searches. After a cast change, joined() merges the
+ * components an added cast links up and split() searches again only the component a removed cast was in.
+ * @author William Toth and Christopher Long
+ */
+
+public class Components {
+    private int[] component; //component number of each vertex
+    private int[] memberOffsets; //members of component c are members[memberOffsets[c] .. memberOffsets[c+1])
+    private int[] members; //vertex ids grouped by component, increasing within each
+
+    /**
+     * Finds the components of a graph
+     * @param g
+     */
+    public Components(IndexedGraph<?,?> g) {
+        int n = g.numVertices();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        for (int v = 0; v < n; v++) parent.set(v, v);
+        if (g instanceof CompactGraph) {
+            CompactGraph<?,?> compact = (CompactGraph<?,?>) g;
+            IntStream.range(0, n).parallel().forEach(u -> {
+                for (int e = compact.outOffsets[u]; e < compact.outOffsets[u + 1]; e++) union(parent, u, compact.outTargets[e]);
+            });
+        }
+        else if (g instanceof BipartiteGraph) { //a cast is connected through its movie, so join it to its first member
+            BipartiteGraph<?> bipartite = (BipartiteGraph<?>) g;
+            IntStream.range(0, bipartite.numMovies()).parallel().forEach(m -> {
+                for (int i = bipartite.castOffsets[m] + 1; i < bipartite.castOffsets[m + 1]; i++) {
+                    union(parent, bipartite.castMembers[bipartite.castOffsets[m]], bipartite.castMembers[i]);
+                }
+            });
+        }
+        else if (g instanceof MappedGraph) { //the same, reading the casts in file order
+            MappedGraph<?> mapped = (MappedGraph<?>) g;
+            IntStream.range(0, mapped.numMovies()).parallel().forEach(m -> {
+                for (long i = mapped.castStart(m) + 1; i < mapped.castEnd(m); i++) {
+                    union(parent, mapped.castMember(mapped.castStart(m)), mapped.castMember(i));
+                }
+            });
+        }
+        else {
+            IntStream.range(0, n).parallel().forEach(u -> unionNeighbors(g, parent, u));
+        }
+
+        int[] root = new int[n];
+        for (int v = 0; v < n; v++) root[v] = find(parent, v);
+        number(root);
+    }
+
+    /**
+     * Components given the smallest member of each vertex's component
+     * @param root
+     */
+    private Components(int[] root) {
+        number(root);
+    }
+
+    /**
+     * Numbers the components and groups their members
+     * @param root smallest member of each vertex's component
+     */
+    private void number(int[] root) {
+        //roots are the smallest ids of their components, so numbering roots in id order numbers components by smallest member
+        int n = root.length;
+        component = new int[n];
+        int count = 0;
+        for (int v = 0; v < n; v++) component[v] = root[v] == v ? count++ : component[root[v]];
+        memberOffsets = new int[count + 1];
+        for (int c : component) memberOffsets[c + 1]++;
+        for (int c = 0; c < count; c++) memberOffsets[c + 1] += memberOffsets[c];
+        members = new int[n];
+        int[] next = Arrays.copyOf(memberOffsets, count);
+        for (int v = 0; v < n; v++) members[next[component[v]]++] = v;
+    }
+
+    /**
+     * Smallest member of each vertex's component, for n vertices; vertices added since are on their own
+     * @param n
+     * @return
+     */
+    private int[] roots(int n) {
+        int[] root = new int[n];
+        for (int v = 0; v < n; v++) root[v] = v < component.length ? members[memberOffsets[component[v]]] : v;
+        return root;
+    }
+
+    /**
+     * Components after edges were added among a group of vertices, which can only merge components: the
+     * components holding the group become one, and no edges are searched
+     * @param n number of vertices now, including any added since
+     * @param group ids of the vertices that gained edges, all now connected
+     * @return
+     */
+    public Components joined(int n, int[] group) {
+        int[] root = roots(n);
+        boolean[] merging = new boolean[n]; //by root
+        int low = n;
+        for (int v : group) {
+            merging[root[v]] = true;
+            low = Math.min(low, root[v]);
+        }
+        for (int v = 0; v < n; v++) if (merging[root[v]]) root[v] = low;
+        return new Components(root);
+    }
+
+    /**
+     * Components after edges were removed among a group of vertices, which can only split the components holding
+     * them: those components are searched again, and only along edges between their own members
+     * @param g the graph after the removal, with no other new edges into the searched components
+     * @param group ids of the vertices that lost edges
+     * @return
+     */
+    public Components split(IndexedGraph<?,?> g, int[] group) {
+        int n = g.numVertices();
+        int[] root = roots(n);
+        boolean[] searched = new boolean[count()], reached = new boolean[n];
+        for (int v : group) if (v < component.length) searched[component[v]] = true;
+        int[] queue = new int[n];
+        for (int c = 0; c < searched.length; c++) {
+            if (!searched[c]) continue;
+            //members come up in increasing order, so each search starts from the smallest member of its piece
+            for (int i = memberOffsets[c]; i < memberOffsets[c + 1]; i++) {
+                int start = members[i];
+                if (reached[start]) continue;
+                reached[start] = true;
+                queue[0] = start;
+                int tail = 1;
+                for (int head = 0; head < tail; head++) {
+                    int u = queue[head];
+                    root[u] = start;
+                    for (int w : GraphLibrary.neighborIds(g, u)) {
+                        if (w < component.length && component[w] == c && !reached[w]) {
+                            reached[w] = true;
+                            queue[tail++] = w;
+                        }
+                    }
+                }
+            }
+        }
+        return new Components(root);
+    }
+
+    /**
+     * Unions a vertex with each of its out neighbors, through the Graph interface
+     * @param g
+     * @param parent
+     * @param u
+     * @param <V>
+     */
+    private static <V> void unionNeighbors(IndexedGraph<V,?> g, AtomicIntegerArray parent, int u) {
+        for (V w : g.outNeighbors(g.vertexAt(u))) union(parent, u, g.indexOf(w));
+    }
+
+    /**
+     * Root of x's tree, pointing each vertex on the way at its grandparent (path halving)
+     * @param parent
+     * @param x
+     * @return
+     */
+    private static int find(AtomicIntegerArray parent, int x) {
+        while (true) {
+            int p = parent.get(x);
+            if (p == x) return x;
+            int grandparent = parent.get(p);
+            if (p != grandparent) parent.compareAndSet(x, p, grandparent); //losing the race only skips a shortcut
+            x = grandparent;
+        }
+    }
+
+    /**
+     * Joins the trees of a and b by pointing the larger root at the smaller; retries if another thread moved
+     * the larger root first
+     * @param parent
+     * @param a
+     * @param b
+     */
+    private static void union(AtomicIntegerArray parent, int a, int b) {
+        while (true) {
+            a = find(parent, a);
+            b = find(parent, b);
+            if (a == b) return;
+            int low = Math.min(a, b), high = Math.max(a, b);
+            if (parent.compareAndSet(high, high, low)) return;
+        }
+    }
+
+    /**
+     * Number of components
+     * @return
+     */
+    public int count() {
+        return memberOffsets.length - 1;
+    }
+
+    /**
+     * Component number of a vertex
+     * @param v
+     * @return
+     */
+    public int componentOf(int v) {
+        return component[v];
+    }
+
+    /**
+     * Number of vertices in a component
+     * @param c
+     * @return
+     */
+    public int size(int c) {
+        return memberOffsets[c + 1] - memberOffsets[c];
+    }
+
+    /**
+     * Ids of a component's vertices in increasing order
+     * @param c
+     * @return
+     */
+    public int[] members(int c) {
+        return Arrays.copyOfRange(members, memberOffsets[c], memberOffsets[c + 1]);
+    }
+
+    /**
+     * The i-th smallest id in a component
+     * @param c
+     * @param i
+     * @return
+     */
+    public int member(int c, int i) {
+        return members[memberOffsets[c] + i];
+    }
+
+    /**
+     * Whether there is a path between two vertices (ignoring edge direction)
+     * @param u
+     * @param v
+     * @return
+     */
+    public boolean connected(int u, int v) {
+        return component[u] == component[v];
+    }
+
+    /**
+     * Ids of every vertex outside a component, in increasing order: the vertices at infinite separation from it
+     * @param c
+     * @return
+     */
+    public int[] outside(int c) {
+        int[] result = new int[component.length - size(c)];
+        //walk the ids, skipping c's members, which come up in the same increasing order
+        int i = 0, skip = memberOffsets[c];
+        for (int v = 0; v < component.length; v++) {
+            if (skip < memberOffsets[c + 1] && members[skip] == v) skip++;
+            else result[i++] = v;
+        }
+        return result;
+    }
+
+    public String toString() {
+        int largest = 0;
+        for (int c = 0; c < count(); c++) largest = Math.max(largest, size(c));
+        return "Components: " + count() + ", largest has " + largest + " of " + component.length + " vertices";
+    }
+}
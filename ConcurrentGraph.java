@@ -0,0 +1,546 @@
+import java.util.*;
+
+/**
+ * Graph that can be read from any number of threads while one writer at a time applies changes.
+ * Every committed state of the graph is an immutable Snapshot: vertices live in a persistent hash trie
+ * (32-way nodes, copied along the path to a change) and each vertex's adjacency maps are copied on write,
+ * so a change rebuilds only the vertices it touches and the trie nodes above them.
+ * Reads take no locks: they go to the snapshot current when they start, and a long traversal that holds on
+ * to a snapshot() sees one consistent graph however many changes commit meanwhile.
+ * Changes are grouped into batches that commit atomically; the single-change Graph mutators are one-change
+ * batches, so bulk loads should go through batch().
+ * @author William Toth and Christopher Long
+ */
+
+public class ConcurrentGraph<V,E> implements Graph<V,E> {
+	private volatile Snapshot<V,E> current;	// latest committed state
+	private final Object writeLock = new Object();	// held while a batch commits
+
+	/**
+	 * Default constructor, creating an empty graph
+	 */
+	public ConcurrentGraph() {
+		current = new Snapshot<V,E>(Node.EMPTY, 0, 0);
+	}
+
+	/**
+	 * The graph as of the last committed batch, unaffected by later changes
+	 * @return
+	 */
+	public Snapshot<V,E> snapshot() {
+		return current;
+	}
+
+	/**
+	 * Starts an empty batch of changes; nothing is visible to readers until it is committed
+	 * @return
+	 */
+	public Batch batch() {
+		return new Batch();
+	}
+
+	public int numVertices() {
+		return current.numVertices();
+	}
+
+	public int numEdges() {
+		return current.numEdges();
+	}
+
+	public Iterable<V> vertices() {
+		return current.vertices();
+	}
+
+	public boolean hasVertex(V v) {
+		return current.hasVertex(v);
+	}
+
+	public int outDegree(V v) {
+		return current.outDegree(v);
+	}
+
+	public int inDegree(V v) {
+		return current.inDegree(v);
+	}
+
+	public Iterable<V> outNeighbors(V v) {
+		return current.outNeighbors(v);
+	}
+
+	public Iterable<V> inNeighbors(V v) {
+		return current.inNeighbors(v);
+	}
+
+	public boolean hasEdge(V u, V v) {
+		return current.hasEdge(u, v);
+	}
+
+	public E getLabel(V u, V v) {
+		return current.getLabel(u, v);
+	}
+
+	public void insertVertex(V v) {
+		Batch batch = batch();
+		batch.insertVertex(v);
+		batch.commit();
+	}
+
+	public void insertDirected(V u, V v, E e) {
+		Batch batch = batch();
+		batch.insertDirected(u, v, e);
+		batch.commit();
+	}
+
+	public void insertUndirected(V u, V v, E e) {
+		Batch batch = batch();
+		batch.insertUndirected(u, v, e);
+		batch.commit();
+	}
+
+	public void removeVertex(V v) {
+		Batch batch = batch();
+		batch.removeVertex(v);
+		batch.commit();
+	}
+
+	public void removeDirected(V u, V v) {
+		Batch batch = batch();
+		batch.removeDirected(u, v);
+		batch.commit();
+	}
+
+	public void removeUndirected(V u, V v) {
+		Batch batch = batch();
+		batch.removeUndirected(u, v);
+		batch.commit();
+	}
+
+	/**
+	 * Returns a string representation of the vertex and edge lists.
+	 */
+	public String toString() {
+		return current.toString();
+	}
+
+	/**
+	 * Changes recorded in order and applied together by commit(). Edge changes need both endpoints to exist
+	 * by the time they are applied, either already in the graph or inserted earlier in the batch.
+	 */
+	public class Batch {
+		private List<Change<V,E>> changes = new ArrayList<>();
+
+		public void insertVertex(V v) {
+			changes.add(w -> w.insertVertex(v));
+		}
+
+		public void insertDirected(V u, V v, E e) {
+			changes.add(w -> w.insertDirected(u, v, e));
+		}
+
+		public void insertUndirected(V u, V v, E e) {
+			changes.add(w -> {
+				w.insertDirected(u, v, e);
+				w.insertDirected(v, u, e);
+			});
+		}
+
+		public void removeVertex(V v) {
+			changes.add(w -> w.removeVertex(v));
+		}
+
+		public void removeDirected(V u, V v) {
+			changes.add(w -> w.removeDirected(u, v));
+		}
+
+		public void removeUndirected(V u, V v) {
+			changes.add(w -> {
+				w.removeDirected(u, v);
+				w.removeDirected(v, u);
+			});
+		}
+
+		/**
+		 * Number of changes recorded
+		 * @return
+		 */
+		public int size() {
+			return changes.size();
+		}
+
+		/**
+		 * Applies every change and publishes the result as the graph's new snapshot. If a change fails, none of
+		 * the batch is applied.
+		 * @return the new snapshot
+		 * @throws IllegalArgumentException if an edge change names a vertex that isn't in the graph
+		 */
+		public Snapshot<V,E> commit() {
+			synchronized (writeLock) {
+				Working<V,E> working = new Working<>(current);
+				for (Change<V,E> change : changes) change.apply(working);
+				current = working.publish();
+				changes = new ArrayList<>();
+				return current;
+			}
+		}
+	}
+
+	private interface Change<V,E> {
+		void apply(Working<V,E> working);
+	}
+
+	/**
+	 * A batch being applied: mutable copies of the adjacency of every vertex touched so far, over the
+	 * snapshot the batch started from
+	 */
+	private static class Working<V,E> {
+		private final Snapshot<V,E> base;
+		private final Map<V, Adjacency<V,E>> touched = new HashMap<>();	// null for a vertex removed by the batch
+		private int vertices, edges;
+
+		Working(Snapshot<V,E> base) {
+			this.base = base;
+			vertices = base.numVertices();
+			edges = base.numEdges();
+		}
+
+		/**
+		 * Writable adjacency of a vertex, copied from the base snapshot the first time it is touched
+		 * @param v
+		 * @return null if v isn't in the graph
+		 */
+		private Adjacency<V,E> mutable(V v) {
+			if (touched.containsKey(v)) return touched.get(v);
+			Adjacency<V,E> old = base.adjacency(v);
+			Adjacency<V,E> copy = old == null ? null : new Adjacency<V,E>(new HashMap<>(old.out), new HashMap<>(old.in));
+			touched.put(v, copy);
+			return copy;
+		}
+
+		private Adjacency<V,E> require(V v) {
+			Adjacency<V,E> a = mutable(v);
+			if (a == null) throw new IllegalArgumentException("No vertex " + v);
+			return a;
+		}
+
+		void insertVertex(V v) {
+			if (mutable(v) != null) return;
+			touched.put(v, new Adjacency<V,E>(new HashMap<>(), new HashMap<>()));
+			vertices++;
+		}
+
+		void insertDirected(V u, V v, E e) {
+			Adjacency<V,E> from = require(u), to = require(v);
+			if (!from.out.containsKey(v)) edges++;
+			from.out.put(v, e);
+			to.in.put(u, e);
+		}
+
+		void removeDirected(V u, V v) {
+			Adjacency<V,E> from = require(u), to = require(v);
+			if (from.out.containsKey(v)) edges--;
+			from.out.remove(v);
+			to.in.remove(u);
+		}
+
+		void removeVertex(V v) {
+			Adjacency<V,E> a = mutable(v);
+			if (a == null) return;
+			for (V u : a.in.keySet()) { // u has an edge to v
+				if (!u.equals(v)) {
+					mutable(u).out.remove(v);
+					edges--;
+				}
+			}
+			for (V w : a.out.keySet()) { // w has an edge from v
+				if (!w.equals(v)) mutable(w).in.remove(v);
+				edges--;
+			}
+			touched.put(v, null);
+			vertices--;
+		}
+
+		/**
+		 * Copies the touched vertices into the trie (the untouched ones are shared with the base snapshot)
+		 * @return
+		 */
+		Snapshot<V,E> publish() {
+			Node root = base.root;
+			for (Map.Entry<V, Adjacency<V,E>> entry : touched.entrySet()) {
+				V v = entry.getKey();
+				Adjacency<V,E> a = entry.getValue();
+				if (a == null) root = Node.remove(root, 0, v.hashCode(), v);
+				else root = Node.put(root, 0, new Leaf(v.hashCode(), v, new Adjacency<V,E>(
+						Collections.unmodifiableMap(a.out), Collections.unmodifiableMap(a.in)), null));
+			}
+			return new Snapshot<V,E>(root, vertices, edges);
+		}
+	}
+
+	/**
+	 * Out and in edges of one vertex: { neighbor -> edge }
+	 */
+	private static class Adjacency<V,E> {
+		final Map<V,E> out, in;
+
+		Adjacency(Map<V,E> out, Map<V,E> in) {
+			this.out = out;
+			this.in = in;
+		}
+	}
+
+	/**
+	 * One committed state of a ConcurrentGraph. Immutable, so it can be shared freely between threads;
+	 * the Graph mutators are unsupported.
+	 */
+	public static class Snapshot<V,E> implements Graph<V,E> {
+		private final Node root;	// vertex -> Adjacency
+		private final int vertices, edges;
+
+		private Snapshot(Node root, int vertices, int edges) {
+			this.root = root;
+			this.vertices = vertices;
+			this.edges = edges;
+		}
+
+		@SuppressWarnings("unchecked")
+		private Adjacency<V,E> adjacency(V v) {
+			return (Adjacency<V,E>) Node.get(root, v.hashCode(), v);
+		}
+
+		private Adjacency<V,E> require(V v) {
+			Adjacency<V,E> a = adjacency(v);
+			if (a == null) throw new IllegalArgumentException("No vertex " + v);
+			return a;
+		}
+
+		public int numVertices() {
+			return vertices;
+		}
+
+		public int numEdges() {
+			return edges;
+		}
+
+		public Iterable<V> vertices() {
+			return () -> new Iterator<V>() {
+				private ArrayDeque<Object> pending = new ArrayDeque<>(Collections.singleton(root));	// nodes and leaves not yet visited
+				private Leaf leaf = advance();	// leaf holding the next vertex
+
+				@SuppressWarnings("unchecked")
+				public V next() {
+					if (leaf == null) throw new NoSuchElementException();
+					V v = (V) leaf.key;
+					leaf = leaf.next != null ? leaf.next : advance();
+					return v;
+				}
+
+				public boolean hasNext() {
+					return leaf != null;
+				}
+
+				private Leaf advance() {
+					while (!pending.isEmpty()) {
+						Object slot = pending.pop();
+						if (slot instanceof Leaf) return (Leaf) slot;
+						for (Object child : ((Node) slot).slots) pending.push(child);
+					}
+					return null;
+				}
+			};
+		}
+
+		public boolean hasVertex(V v) {
+			return adjacency(v) != null;
+		}
+
+		public int outDegree(V v) {
+			return require(v).out.size();
+		}
+
+		public int inDegree(V v) {
+			return require(v).in.size();
+		}
+
+		public Iterable<V> outNeighbors(V v) {
+			return require(v).out.keySet();
+		}
+
+		public Iterable<V> inNeighbors(V v) {
+			return require(v).in.keySet();
+		}
+
+		public boolean hasEdge(V u, V v) {
+			return require(u).out.containsKey(v);
+		}
+
+		public E getLabel(V u, V v) {
+			return require(u).out.get(v);
+		}
+
+		public void insertVertex(V v) {
+			throw new UnsupportedOperationException("Snapshots are read-only");
+		}
+
+		public void insertDirected(V u, V v, E e) {
+			throw new UnsupportedOperationException("Snapshots are read-only");
+		}
+
+		public void insertUndirected(V u, V v, E e) {
+			throw new UnsupportedOperationException("Snapshots are read-only");
+		}
+
+		public void removeVertex(V v) {
+			throw new UnsupportedOperationException("Snapshots are read-only");
+		}
+
+		public void removeDirected(V u, V v) {
+			throw new UnsupportedOperationException("Snapshots are read-only");
+		}
+
+		public void removeUndirected(V u, V v) {
+			throw new UnsupportedOperationException("Snapshots are read-only");
+		}
+
+		/**
+		 * Returns a string representation of the vertex and edge lists.
+		 */
+		public String toString() {
+			StringBuilder vertexList = new StringBuilder(), edgeList = new StringBuilder();
+			for (V v : vertices()) {
+				if (vertexList.length() > 0) {
+					vertexList.append(", ");
+					edgeList.append(", ");
+				}
+				vertexList.append(v);
+				edgeList.append(v).append('=').append(require(v).out);
+			}
+			return "Vertices: [" + vertexList + "]\nOut edges: {" + edgeList + "}";
+		}
+	}
+
+	/**
+	 * Key and value in the trie; keys whose hashes are equal in all 32 bits are chained through next
+	 */
+	private static class Leaf {
+		final int hash;
+		final Object key, value;
+		final Leaf next;
+
+		Leaf(int hash, Object key, Object value, Leaf next) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+			this.next = next;
+		}
+
+		/**
+		 * This chain with a leaf of the same hash added, replacing any leaf with an equal key
+		 */
+		Leaf with(Leaf leaf) {
+			return new Leaf(hash, leaf.key, leaf.value, without(leaf.key));
+		}
+
+		/**
+		 * This chain without the leaf for a key, or null if that leaves it empty
+		 */
+		Leaf without(Object key) {
+			Leaf rest = next == null ? null : next.without(key);
+			if (this.key.equals(key)) return rest;
+			return rest == next ? this : new Leaf(hash, this.key, value, rest);
+		}
+	}
+
+	/**
+	 * Trie node branching on 5 bits of the hash: slot i holds the Leaf or Node for the i-th set bit of bitmap.
+	 * Nodes are never modified; changes copy the path from the root.
+	 */
+	private static class Node {
+		static final Node EMPTY = new Node(0, new Object[0]);
+
+		final int bitmap;	// which of the 32 branches are present
+		final Object[] slots;	// a Leaf or Node per present branch, in branch order
+
+		Node(int bitmap, Object[] slots) {
+			this.bitmap = bitmap;
+			this.slots = slots;
+		}
+
+		static Object get(Node node, int hash, Object key) {
+			for (int shift = 0; ; shift += 5) {
+				int bit = 1 << ((hash >>> shift) & 31);
+				if ((node.bitmap & bit) == 0) return null;
+				Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+				if (slot instanceof Node) {
+					node = (Node) slot;
+					continue;
+				}
+				for (Leaf leaf = (Leaf) slot; leaf != null; leaf = leaf.next) {
+					if (leaf.hash == hash && leaf.key.equals(key)) return leaf.value;
+				}
+				return null;
+			}
+		}
+
+		/**
+		 * Copy of the subtrie at a node with a leaf added or replaced
+		 * @param node
+		 * @param shift position of the hash bits this node branches on
+		 * @param leaf
+		 * @return
+		 */
+		static Node put(Node node, int shift, Leaf leaf) {
+			int bit = 1 << ((leaf.hash >>> shift) & 31);
+			int i = Integer.bitCount(node.bitmap & (bit - 1));
+			if ((node.bitmap & bit) == 0) {
+				Object[] slots = new Object[node.slots.length + 1];
+				System.arraycopy(node.slots, 0, slots, 0, i);
+				slots[i] = leaf;
+				System.arraycopy(node.slots, i, slots, i + 1, node.slots.length - i);
+				return new Node(node.bitmap | bit, slots);
+			}
+			Object slot = node.slots[i], replacement;
+			if (slot instanceof Node) replacement = put((Node) slot, shift + 5, leaf);
+			else if (((Leaf) slot).hash == leaf.hash) replacement = ((Leaf) slot).with(leaf);
+			else replacement = put(put(EMPTY, shift + 5, (Leaf) slot), shift + 5, leaf); //the hashes differ further down
+			Object[] slots = node.slots.clone();
+			slots[i] = replacement;
+			return new Node(node.bitmap, slots);
+		}
+
+		/**
+		 * Copy of the subtrie at a node without a key, collapsing branches left with a single leaf
+		 * @param node
+		 * @param shift
+		 * @param hash
+		 * @param key
+		 * @return
+		 */
+		static Node remove(Node node, int shift, int hash, Object key) {
+			int bit = 1 << ((hash >>> shift) & 31);
+			if ((node.bitmap & bit) == 0) return node;
+			int i = Integer.bitCount(node.bitmap & (bit - 1));
+			Object slot = node.slots[i], replacement;
+			if (slot instanceof Node) {
+				Node child = remove((Node) slot, shift + 5, hash, key);
+				if (child == slot) return node;
+				boolean single = child.slots.length == 1 && child.slots[0] instanceof Leaf;
+				replacement = child.slots.length == 0 ? null : single ? child.slots[0] : child;
+			}
+			else {
+				Leaf leaf = (Leaf) slot;
+				if (leaf.hash != hash) return node;
+				replacement = leaf.without(key);
+				if (replacement == leaf) return node;
+			}
+			if (replacement != null) {
+				Object[] slots = node.slots.clone();
+				slots[i] = replacement;
+				return new Node(node.bitmap, slots);
+			}
+			Object[] slots = new Object[node.slots.length - 1];
+			System.arraycopy(node.slots, 0, slots, 0, i);
+			System.arraycopy(node.slots, i + 1, slots, i, slots.length - i);
+			return new Node(node.bitmap & ~bit, slots);
+		}
+	}
+}
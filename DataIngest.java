@@ -0,0 +1,361 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Parallel loader for the pipe-delimited data files. Each file is memory-mapped and parsed straight from
+ * its bytes: numeric id fields are read without creating Strings, and only names and titles are decoded.
+ * actors.txt, movies.txt and movie-actors.txt are all read at the same time, and movie-actors.txt is
+ * further split into byte ranges parsed in parallel.
+ * @author William Toth and Christopher Long
+ */
+
+public class DataIngest {
+    private SymbolTable<String> actors; //actor names <-> actor ids
+    private SymbolTable<String> movies; //movie titles <-> movie ids
+    private int[] castOffsets; //cast of movie m is castMembers[castOffsets[m] .. castOffsets[m+1])
+    private int[] castMembers; //actor ids, sorted and without repeats within each movie
+
+    private static final Charset CHARSET = Charset.defaultCharset(); //matches what FileReader decoded with
+
+    private DataIngest() {
+    }
+
+    public SymbolTable<String> actors() {
+        return actors;
+    }
+
+    public SymbolTable<String> movies() {
+        return movies;
+    }
+
+    public int[] castOffsets() {
+        return castOffsets;
+    }
+
+    public int[] castMembers() {
+        return castMembers;
+    }
+
+    /**
+     * Loads the three data files in parallel
+     * @param actorPath lines of actorId|name
+     * @param moviePath lines of movieId|title
+     * @param castPath lines of movieId|actorId
+     * @return
+     * @throws IOException if a file can't be read or has a malformed line
+     */
+    public static DataIngest load(String actorPath, String moviePath, String castPath) throws IOException {
+        try {
+            CompletableFuture<NameFile> actorFile = CompletableFuture.supplyAsync(() -> readNames(actorPath));
+            CompletableFuture<NameFile> movieFile = CompletableFuture.supplyAsync(() -> readNames(moviePath));
+            long start = Metrics.start();
+            int[][] pairs = readPairs(castPath); //parsed by range on the common pool while the names load
+            NameFile actorNames = actorFile.join(), movieNames = movieFile.join();
+            Metrics.stop("build.parse", start);
+            DataIngest data = new DataIngest();
+            data.actors = new SymbolTable<>();
+            data.movies = new SymbolTable<>();
+            start = Metrics.start();
+            IdMap actorIds = actorNames.intern(data.actors);
+            IdMap movieIds = movieNames.intern(data.movies);
+            Metrics.stop("build.intern", start);
+            start = Metrics.start();
+            data.groupCasts(pairs, actorIds, movieIds);
+            Metrics.stop("build.groupCasts", start);
+            return data;
+        }
+        catch (CompletionException | UncheckedIOException e) {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Translates file ids to interned ids (in parallel by range) and groups actors by movie with a counting sort,
+     * dropping pairs whose ids aren't in the name files and repeated actors within a cast
+     * @param pairs movie and actor file ids, interleaved, one array per range of the file
+     * @param actorIds
+     * @param movieIds
+     */
+    private void groupCasts(int[][] pairs, IdMap actorIds, IdMap movieIds) {
+        IntStream.range(0, pairs.length).parallel().forEach(chunk -> {
+            int[] range = pairs[chunk];
+            for (int i = 0; i < range.length; i += 2) {
+                int movie = movieIds.get(range[i]), actor = actorIds.get(range[i + 1]);
+                range[i] = actor < 0 ? -1 : movie;
+                range[i + 1] = actor;
+            }
+        });
+        int numMovies = movies.size();
+        int[] counts = new int[numMovies + 1];
+        for (int[] range : pairs) {
+            for (int i = 0; i < range.length; i += 2) if (range[i] >= 0) counts[range[i] + 1]++;
+        }
+        for (int m = 0; m < numMovies; m++) counts[m + 1] += counts[m];
+        int[] grouped = new int[counts[numMovies]];
+        int[] next = Arrays.copyOf(counts, numMovies);
+        for (int[] range : pairs) {
+            for (int i = 0; i < range.length; i += 2) if (range[i] >= 0) grouped[next[range[i]]++] = range[i + 1];
+        }
+        castOffsets = new int[numMovies + 1];
+        int size = 0;
+        for (int m = 0; m < numMovies; m++) {
+            Arrays.sort(grouped, counts[m], counts[m + 1]);
+            for (int i = counts[m]; i < counts[m + 1]; i++) {
+                if (i == counts[m] || grouped[i] != grouped[i - 1]) grouped[size++] = grouped[i];
+            }
+            castOffsets[m + 1] = size;
+        }
+        castMembers = Arrays.copyOf(grouped, size);
+    }
+
+    /**
+     * Receives the movie and actor file ids of each line of a movieId|actorId file
+     */
+    interface PairConsumer {
+        void accept(int movieFileId, int actorFileId);
+    }
+
+    /**
+     * Interns every name of an id|name file
+     * @param path
+     * @param table
+     * @return map from the file's ids to interned ids, -1 for ids the file doesn't define
+     * @throws IOException if the file can't be read or has a malformed line
+     */
+    static IntUnaryOperator internNames(String path, SymbolTable<String> table) throws IOException {
+        try {
+            return readNames(path).intern(table)::get;
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parses a movieId|actorId file front to back, handing each pair over as it is read, so the pairs never
+     * have to fit in memory together. The file is read a chunk at a time rather than mapped, so it can be of
+     * any size; the partial line at the end of a chunk is carried over to the next.
+     * @param path
+     * @param consumer
+     * @throws IOException if the file can't be read or has a malformed line
+     */
+    static void forEachPair(String path, PairConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            long base = 0; //file offset of the buffer's first byte
+            while (true) {
+                boolean ended = channel.read(buffer) < 0;
+                buffer.flip();
+                int stop = buffer.limit();
+                if (!ended) {
+                    while (stop > 0 && buffer.get(stop - 1) != '\n') stop--; //complete lines only
+                }
+                parsePairs(buffer, 0, stop, base, path, consumer);
+                if (ended) return;
+                buffer.position(stop);
+                buffer.compact();
+                base += stop;
+                if (!buffer.hasRemaining()) { //a line longer than the buffer
+                    buffer.flip();
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+                }
+            }
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parsed id|name file: the numeric id and the name on each line, in file order
+     */
+    private static class NameFile {
+        int[] fileIds;
+        String[] names;
+        int size;
+
+        /**
+         * Interns every name and maps each file id to the interned id of its name
+         * @param table
+         * @return
+         */
+        IdMap intern(SymbolTable<String> table) {
+            int[] ids = new int[size];
+            for (int i = 0; i < size; i++) ids[i] = table.intern(names[i]);
+            return new IdMap(Arrays.copyOf(fileIds, size), ids);
+        }
+    }
+
+    /**
+     * File id -> interned id, as file ids sorted for binary search alongside their interned ids
+     */
+    private static class IdMap {
+        private final int[] keys, values;
+
+        IdMap(int[] fileIds, int[] ids) {
+            //sort by file id, then by line, so repeated file ids stay in file order
+            long[] packed = new long[fileIds.length];
+            for (int i = 0; i < packed.length; i++) packed[i] = ((long) fileIds[i] << 32) | i;
+            Arrays.sort(packed);
+            keys = new int[packed.length];
+            values = new int[packed.length];
+            for (int i = 0; i < packed.length; i++) {
+                keys[i] = (int) (packed[i] >> 32);
+                values[i] = ids[(int) packed[i]];
+            }
+        }
+
+        /**
+         * Interned id of a file id, or -1 if the file id was never defined (a repeated file id keeps its last name)
+         * @param fileId
+         * @return
+         */
+        int get(int fileId) {
+            int i = Arrays.binarySearch(keys, fileId);
+            if (i < 0) return -1;
+            while (i + 1 < keys.length && keys[i + 1] == fileId) i++;
+            return values[i];
+        }
+    }
+
+    /**
+     * Reads a file of id|name lines
+     * @param path
+     * @return
+     */
+    private static NameFile readNames(String path) {
+        MappedByteBuffer buffer = map(path);
+        NameFile file = new NameFile();
+        file.fileIds = new int[1024];
+        file.names = new String[1024];
+        byte[] scratch = new byte[256];
+        int pos = 0, limit = buffer.limit();
+        while (pos < limit) {
+            int end = lineEnd(buffer, pos, limit);
+            int contentEnd = end > pos && buffer.get(end - 1) == '\r' ? end - 1 : end;
+            if (contentEnd > pos) { //skip blank lines
+                int bar = pos;
+                while (bar < contentEnd && buffer.get(bar) != '|') bar++;
+                if (bar == contentEnd) throw malformed(path, pos);
+                int nameEnd = bar + 1;
+                while (nameEnd < contentEnd && buffer.get(nameEnd) != '|') nameEnd++; //the name is the second field
+                int length = nameEnd - bar - 1;
+                if (scratch.length < length) scratch = new byte[length * 2];
+                buffer.get(bar + 1, scratch, 0, length);
+                if (file.size == file.fileIds.length) {
+                    file.fileIds = Arrays.copyOf(file.fileIds, file.size * 2);
+                    file.names = Arrays.copyOf(file.names, file.size * 2);
+                }
+                file.fileIds[file.size] = parseInt(buffer, pos, bar, 0, path);
+                file.names[file.size++] = new String(scratch, 0, length, CHARSET);
+            }
+            pos = end + 1;
+        }
+        return file;
+    }
+
+    /**
+     * Reads a file of movieId|actorId lines, parsing byte ranges in parallel. A line belongs to the range
+     * holding its first byte.
+     * @param path
+     * @return interleaved movie and actor file ids for each range, in file order
+     */
+    private static int[][] readPairs(String path) {
+        MappedByteBuffer buffer = map(path);
+        int limit = buffer.limit();
+        int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4, limit / (1 << 16)));
+        int[][] pairs = new int[chunks][];
+        //absolute gets don't touch the buffer's position, so every range can share it
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int start = (int) ((long) limit * chunk / chunks), stop = (int) ((long) limit * (chunk + 1) / chunks);
+            if (start > 0 && buffer.get(start - 1) != '\n') start = lineEnd(buffer, start, limit) + 1;
+            int[][] range = {new int[256]};
+            int[] size = {0};
+            parsePairs(buffer, start, stop, 0, path, (movie, actor) -> {
+                if (size[0] + 2 > range[0].length) range[0] = Arrays.copyOf(range[0], range[0].length * 2);
+                range[0][size[0]++] = movie;
+                range[0][size[0]++] = actor;
+            });
+            pairs[chunk] = Arrays.copyOf(range[0], size[0]);
+        });
+        return pairs;
+    }
+
+    /**
+     * Parses the movieId|actorId lines that start in bytes [start, stop) of a buffer
+     * @param buffer a mapped file, or a chunk read from one
+     * @param start first byte of a line
+     * @param stop
+     * @param base file offset of the buffer's first byte, for error messages
+     * @param path for error messages
+     * @param consumer
+     */
+    private static void parsePairs(ByteBuffer buffer, int start, int stop, long base, String path, PairConsumer consumer) {
+        int limit = buffer.limit();
+        for (int pos = start; pos < stop && pos < limit; ) {
+            int end = lineEnd(buffer, pos, limit);
+            int contentEnd = end > pos && buffer.get(end - 1) == '\r' ? end - 1 : end;
+            if (contentEnd > pos) {
+                int bar = pos;
+                while (bar < contentEnd && buffer.get(bar) != '|') bar++;
+                if (bar == contentEnd) throw malformed(path, base + pos);
+                consumer.accept(parseInt(buffer, pos, bar, base, path), parseInt(buffer, bar + 1, contentEnd, base, path));
+            }
+            pos = end + 1;
+        }
+    }
+
+    /**
+     * Maps a whole file read-only
+     * @param path
+     * @return
+     */
+    private static MappedByteBuffer map(String path) {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("File too large to map: " + path);
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Position of the '\n' ending the line that starts at pos, or limit for an unterminated last line
+     */
+    private static int lineEnd(ByteBuffer buffer, int pos, int limit) {
+        while (pos < limit && buffer.get(pos) != '\n') pos++;
+        return pos;
+    }
+
+    /**
+     * Parses a non-negative decimal int from bytes [from, to) of a buffer starting at file offset base
+     */
+    private static int parseInt(ByteBuffer buffer, int from, int to, long base, String path) {
+        if (from == to) throw malformed(path, base + from);
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) throw malformed(path, base + from);
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static UncheckedIOException malformed(String path, long offset) {
+        return new UncheckedIOException(new IOException("Malformed line at byte " + offset + " of " + path));
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.Arrays;
+
+/**
+ * Vertices of a graph bucketed by out degree, so "vertices with degree in [low, high], ordered by degree" is
+ * a slice of one array rather than a scan and sort of the whole graph. Vertex ids are laid out by a counting
+ * sort, degree buckets one after another and ids increasing within a bucket.
+ * A vertex whose degree changes moves one bucket at a time by swapping with a bucket's first or last member;
+ * buckets disturbed that way are re-sorted the next time a query reads them, so queries lock the index too.
+ * @author William Toth and Christopher Long
+ */
+
+public class DegreeIndex {
+    private int[] vertices; //vertex ids grouped by degree
+    private int[] bucketStart; //vertices of degree d are vertices[bucketStart[d] .. bucketStart[d+1])
+    private int[] position; //index of each vertex in vertices
+    private int[] degrees; //degree each vertex is filed under
+    private boolean[] unsorted; //buckets whose ids may be out of order
+    private int size; //number of vertices indexed
+
+    /**
+     * Indexes every vertex of a graph by its out degree
+     * @param g
+     */
+    public DegreeIndex(IndexedGraph<?,?> g) {
+        size = g.numVertices();
+        degrees = new int[size];
+        int maxDegree = 0;
+        for (int v = 0; v < size; v++) {
+            degrees[v] = g.outDegreeAt(v);
+            maxDegree = Math.max(maxDegree, degrees[v]);
+        }
+        bucketStart = new int[maxDegree + 2];
+        for (int d : degrees) bucketStart[d + 1]++;
+        for (int d = 0; d <= maxDegree; d++) bucketStart[d + 1] += bucketStart[d];
+        vertices = new int[size];
+        position = new int[size];
+        int[] next = Arrays.copyOf(bucketStart, maxDegree + 1);
+        for (int v = 0; v < size; v++) { //ids go in increasing order, so every bucket starts out sorted
+            position[v] = next[degrees[v]]++;
+            vertices[position[v]] = v;
+        }
+        unsorted = new boolean[maxDegree + 1];
+    }
+
+    /**
+     * Ids of the vertices with degree between low and high inclusive, by increasing degree and then id
+     * @param low
+     * @param high
+     * @return
+     */
+    public synchronized int[] range(int low, int high) {
+        int maxDegree = bucketStart.length - 2;
+        low = Math.max(low, 0);
+        high = Math.min(high, maxDegree);
+        if (low > high) return new int[0];
+        for (int d = low; d <= high; d++) {
+            if (!unsorted[d]) continue;
+            Arrays.sort(vertices, bucketStart[d], bucketStart[d + 1]);
+            for (int i = bucketStart[d]; i < bucketStart[d + 1]; i++) position[vertices[i]] = i;
+            unsorted[d] = false;
+        }
+        return Arrays.copyOfRange(vertices, bucketStart[low], bucketStart[high + 1]);
+    }
+
+    /**
+     * Degree a vertex is indexed under
+     * @param v
+     * @return
+     */
+    public int degree(int v) {
+        return degrees[v];
+    }
+
+    /**
+     * Number of vertices indexed
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Re-files vertices whose degree may have changed, adding any that are new to the graph
+     * @param g the graph after the change
+     * @param changed ids of the vertices to re-file
+     */
+    public synchronized void update(IndexedGraph<?,?> g, int[] changed) {
+        for (int v : changed) update(v, g.outDegreeAt(v));
+    }
+
+    /**
+     * Files a vertex under a new degree. A vertex id past the end of the index adds that vertex (and any ids
+     * before it that are missing, with degree zero).
+     * @param v
+     * @param degree
+     */
+    public synchronized void update(int v, int degree) {
+        while (size <= v) add();
+        if (degree + 2 > bucketStart.length) { //new highest degree: add empty buckets at the end
+            int old = bucketStart.length;
+            bucketStart = Arrays.copyOf(bucketStart, degree + 2);
+            Arrays.fill(bucketStart, old, bucketStart.length, size);
+            unsorted = Arrays.copyOf(unsorted, degree + 1);
+        }
+        while (degrees[v] < degree) { //swap with the last member of v's bucket, then move the boundary past it
+            int d = degrees[v];
+            swap(position[v], bucketStart[d + 1] - 1);
+            bucketStart[d + 1]--;
+            degrees[v] = d + 1;
+            unsorted[d] = unsorted[d + 1] = true;
+        }
+        while (degrees[v] > degree) { //swap with the first member of v's bucket, then move the boundary past it
+            int d = degrees[v];
+            swap(position[v], bucketStart[d]);
+            bucketStart[d]++;
+            degrees[v] = d - 1;
+            unsorted[d] = unsorted[d - 1] = true;
+        }
+    }
+
+    /**
+     * Adds the next vertex id to the end of the highest bucket, to be moved down from there
+     */
+    private void add() {
+        if (size == vertices.length) {
+            int capacity = Math.max(16, size * 2);
+            vertices = Arrays.copyOf(vertices, capacity);
+            position = Arrays.copyOf(position, capacity);
+            degrees = Arrays.copyOf(degrees, capacity);
+        }
+        int maxDegree = bucketStart.length - 2;
+        vertices[size] = size;
+        position[size] = size;
+        degrees[size] = maxDegree;
+        bucketStart[maxDegree + 1] = ++size;
+        unsorted[maxDegree] = true;
+        update(size - 1, 0);
+    }
+
+    private void swap(int i, int j) {
+        int a = vertices[i], b = vertices[j];
+        vertices[i] = b;
+        vertices[j] = a;
+        position[a] = j;
+        position[b] = i;
+    }
+
+    public String toString() {
+        return "Degree index: " + size + " vertices, degrees 0.." + (bucketStart.length - 2);
+    }
+}
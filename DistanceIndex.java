@@ -0,0 +1,266 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Exact distances between any two vertices of an undirected graph from 2-hop labels (pruned landmark labeling,
+ * Akiba et al.). Each vertex keeps a short list of hubs with its distance to each, chosen so that every pair of
+ * connected vertices shares a hub on one of their shortest paths; a query merges the two lists. Hubs are the
+ * vertices in order of decreasing degree: a BFS from each hub labels the vertices it reaches, and stops at any
+ * vertex whose distance the labels from earlier hubs already give, so later searches stay small. Actor-movie
+ * graphs are searched through their film and cast rows, each movie expanded at most once per hub, without
+ * copying out their co-star edges.
+ *
+ * File layout (big-endian ints): MAGIC, VERSION, the stamp of the data files (see GraphSnapshot.stamp), then
+ * labelOffsets, hubs and hubDistances, each written as its length followed by its elements.
+ * @author William Toth and Christopher Long
+ */
+
+public class DistanceIndex {
+    private int[] labelOffsets; //label of vertex v is entries labelOffsets[v] .. labelOffsets[v+1]
+    private int[] hubs; //hub ranks (position in decreasing degree order), increasing within each label
+    private int[] hubDistances; //distance from the vertex to each hub of its label
+
+    private static final int MAGIC = 0x4B42444C; //"KBDL"
+    private static final int VERSION = 2;
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    private DistanceIndex(int[] labelOffsets, int[] hubs, int[] hubDistances) {
+        this.labelOffsets = labelOffsets;
+        this.hubs = hubs;
+        this.hubDistances = hubDistances;
+    }
+
+    /**
+     * Labels every vertex of a graph
+     * @param g an undirected graph
+     */
+    public DistanceIndex(IndexedGraph<?,?> g) {
+        long start = Metrics.start();
+        int n = g.numVertices();
+        BipartiteGraph<?> bipartite = g instanceof BipartiteGraph ? (BipartiteGraph<?>) g : null;
+        MappedGraph<?> mapped = g instanceof MappedGraph ? (MappedGraph<?>) g : null;
+        int[] offsets = null, targets = null, movieRoot = null; //movieRoot[m] == rank + 1 once the search from rank expanded m
+        if (bipartite != null) movieRoot = new int[bipartite.numMovies()];
+        else if (mapped != null) movieRoot = new int[mapped.numMovies()];
+        else {
+            int[][] rows = GraphLibrary.neighborRows(g);
+            offsets = rows[0];
+            targets = rows[1];
+        }
+        //highest degree first (ties by id): hubs that cover many shortest paths early prune the most
+        long[] keys = new long[n];
+        for (int v = 0; v < n; v++) keys[v] = ((long) (Integer.MAX_VALUE - g.outDegreeAt(v)) << 32) | v;
+        Arrays.sort(keys);
+
+        int[][] labelHubs = new int[n][], labelDistances = new int[n][];
+        int[] labelSizes = new int[n];
+        int[] rootDistance = new int[n]; //distance from the current root to each hub of its label, by hub rank
+        int[] distance = new int[n], queue = new int[n];
+        Arrays.fill(rootDistance, UNREACHED);
+        Arrays.fill(distance, -1);
+        for (int rank = 0; rank < n; rank++) {
+            int root = (int) keys[rank];
+            for (int i = 0; i < labelSizes[root]; i++) rootDistance[labelHubs[root][i]] = labelDistances[root][i];
+            distance[root] = 0;
+            queue[0] = root;
+            int tail = 1;
+            for (int head = 0; head < tail; head++) {
+                int u = queue[head], d = distance[u];
+                boolean covered = false; //an earlier hub already gives u's distance from root
+                for (int i = 0; i < labelSizes[u] && !covered; i++) {
+                    int viaHub = rootDistance[labelHubs[u][i]];
+                    covered = viaHub != UNREACHED && viaHub + labelDistances[u][i] <= d;
+                }
+                if (covered) continue;
+                if (labelHubs[u] == null) {
+                    labelHubs[u] = new int[4];
+                    labelDistances[u] = new int[4];
+                }
+                else if (labelSizes[u] == labelHubs[u].length) {
+                    labelHubs[u] = Arrays.copyOf(labelHubs[u], labelSizes[u] * 2);
+                    labelDistances[u] = Arrays.copyOf(labelDistances[u], labelSizes[u] * 2);
+                }
+                labelHubs[u][labelSizes[u]] = rank;
+                labelDistances[u][labelSizes[u]++] = d;
+                if (bipartite != null) {
+                    //a movie's cast is reached in full by the first actor to expand it, so later actors skip it
+                    for (int f = bipartite.filmOffsets[u]; f < bipartite.filmOffsets[u + 1]; f++) {
+                        int m = bipartite.films[f];
+                        if (movieRoot[m] == rank + 1) continue;
+                        movieRoot[m] = rank + 1;
+                        for (int i = bipartite.castOffsets[m]; i < bipartite.castOffsets[m + 1]; i++) {
+                            int v = bipartite.castMembers[i];
+                            if (distance[v] < 0) {
+                                distance[v] = d + 1;
+                                queue[tail++] = v;
+                            }
+                        }
+                    }
+                }
+                else if (mapped != null) {
+                    for (long f = mapped.filmStart(u); f < mapped.filmEnd(u); f++) {
+                        int m = mapped.film(f);
+                        if (movieRoot[m] == rank + 1) continue;
+                        movieRoot[m] = rank + 1;
+                        for (long i = mapped.castStart(m); i < mapped.castEnd(m); i++) {
+                            int v = mapped.castMember(i);
+                            if (distance[v] < 0) {
+                                distance[v] = d + 1;
+                                queue[tail++] = v;
+                            }
+                        }
+                    }
+                }
+                else {
+                    for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                        int v = targets[e];
+                        if (distance[v] < 0) {
+                            distance[v] = d + 1;
+                            queue[tail++] = v;
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < tail; i++) distance[queue[i]] = -1;
+            //the root's label gained this rank during the search, which was never set in rootDistance
+            for (int i = 0; i < labelSizes[root]; i++) rootDistance[labelHubs[root][i]] = UNREACHED;
+        }
+
+        labelOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) labelOffsets[v + 1] = labelOffsets[v] + labelSizes[v];
+        hubs = new int[labelOffsets[n]];
+        hubDistances = new int[labelOffsets[n]];
+        for (int v = 0; v < n; v++) {
+            if (labelSizes[v] == 0) continue;
+            System.arraycopy(labelHubs[v], 0, hubs, labelOffsets[v], labelSizes[v]);
+            System.arraycopy(labelDistances[v], 0, hubDistances, labelOffsets[v], labelSizes[v]);
+        }
+        Metrics.stop("distanceIndex.build", start);
+    }
+
+    public int numVertices() {
+        return labelOffsets.length - 1;
+    }
+
+    /**
+     * Total number of hub entries over every label
+     * @return
+     */
+    public int size() {
+        return hubs.length;
+    }
+
+    /**
+     * Length of a shortest path between two vertices
+     * @param u
+     * @param v
+     * @return the distance, or -1 if the vertices aren't connected
+     */
+    public int distance(int u, int v) {
+        int best = UNREACHED;
+        int i = labelOffsets[u], j = labelOffsets[v];
+        while (i < labelOffsets[u + 1] && j < labelOffsets[v + 1]) {
+            if (hubs[i] < hubs[j]) i++;
+            else if (hubs[i] > hubs[j]) j++;
+            else best = Math.min(best, hubDistances[i++] + hubDistances[j++]);
+        }
+        return best == UNREACHED ? -1 : best;
+    }
+
+    /**
+     * Distances between many pairs of vertices, answered in parallel
+     * @param from
+     * @param to
+     * @return distance between from[i] and to[i] at i, -1 for pairs that aren't connected
+     */
+    public int[] distances(int[] from, int[] to) {
+        if (from.length != to.length) throw new IllegalArgumentException("Need as many targets as sources: " + from.length + " != " + to.length);
+        int[] result = new int[from.length];
+        IntStream.range(0, from.length).parallel().forEach(i -> result[i] = distance(from[i], to[i]));
+        return result;
+    }
+
+    /**
+     * Distances from one vertex to many. The source's label is spread into an array by hub rank first, so each
+     * target costs one pass over its own label.
+     * @param source
+     * @param targets
+     * @return distance to targets[i] at i, -1 for targets not connected to the source
+     */
+    public int[] distancesFrom(int source, int[] targets) {
+        int[] viaHub = new int[numVertices()];
+        Arrays.fill(viaHub, UNREACHED);
+        for (int i = labelOffsets[source]; i < labelOffsets[source + 1]; i++) viaHub[hubs[i]] = hubDistances[i];
+        int[] result = new int[targets.length];
+        for (int t = 0; t < targets.length; t++) {
+            int best = UNREACHED;
+            for (int i = labelOffsets[targets[t]]; i < labelOffsets[targets[t] + 1]; i++) {
+                if (viaHub[hubs[i]] != UNREACHED) best = Math.min(best, viaHub[hubs[i]] + hubDistances[i]);
+            }
+            result[t] = best == UNREACHED ? -1 : best;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the index to a temporary file and then moves it into place, so readers never see half a file
+     * @param path
+     * @param stamp of the data files the indexed graph was built from
+     * @throws IOException
+     */
+    public void save(String path, byte[] stamp) throws IOException {
+        Path target = Paths.get(path).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            GraphSnapshot.writeStamp(out, stamp);
+            GraphSnapshot.writeInts(out, labelOffsets);
+            GraphSnapshot.writeInts(out, hubs);
+            GraphSnapshot.writeInts(out, hubDistances);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Maps an index file and reads its labels
+     * @param path
+     * @return
+     * @throws IOException if the file can't be read or isn't a distance index of this version
+     */
+    public static DistanceIndex load(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Distance index too large to map: " + path);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) throw new IOException("Not a distance index: " + path);
+            int version = buffer.getInt();
+            if (version != VERSION) throw new IOException("Unsupported distance index version " + version + ": " + path);
+            try {
+                GraphSnapshot.skipStamp(buffer);
+                int[] labelOffsets = GraphSnapshot.readInts(buffer);
+                int[] hubs = GraphSnapshot.readInts(buffer);
+                int[] hubDistances = GraphSnapshot.readInts(buffer);
+                if (labelOffsets.length == 0 || hubs.length != hubDistances.length || labelOffsets[labelOffsets.length - 1] != hubs.length) {
+                    throw new IOException("Corrupt distance index: " + path);
+                }
+                return new DistanceIndex(labelOffsets, hubs, hubDistances);
+            }
+            catch (RuntimeException e) { //truncated or corrupt file
+                throw new IOException("Corrupt distance index: " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Returns a string representation of the label sizes.
+     */
+    public String toString() {
+        int n = numVertices();
+        return "Distance labels: " + hubs.length + " entries over " + n + " vertices" +
+                (n == 0 ? "" : String.format(", %.1f per vertex", (double) hubs.length / n));
+    }
+}
@@ -1,5 +1,9 @@
 import java.util.*;
 import java.io.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 
 
 /**
@@ -8,138 +12,854 @@ import java.io.*;
  */
 
 public class Game {
-    private Graph<String, Set<String>> graph;  //instance variable for main graph
-    private String center;  //center of the universe
+    private IndexedGraph<String, int[]> graph;  //instance variable for main graph (vertex ids are actor ids, labels are sorted movie ids)
+    private boolean bipartite; //whether graph keeps actor-movie adjacency instead of co-star cliques
+    private boolean mapped; //whether the actor-movie adjacency stays in a memory-mapped file instead of the heap
+    private int center;  //id of the center of the universe
+    private volatile TraversalMode traversal = TraversalMode.DIRECTION_OPTIMIZING; //how bfs grows its search
+    private TraversalCache cache; //recent bfs results keyed by source
+    private DegreeIndex degreeIndex; //actor ids bucketed by number of co-stars
+    private Components components; //which actors can reach each other at all
+    private volatile double[] betweenness; //exact betweenness of every actor, worked out by the first exact 'b'
+    private volatile DistanceIndex distanceIndex; //2-hop distance labels for 'a', loaded or built on first use
+    private String[] dataFiles; //actor, movie and movie-actor files the universe matches, null once it has been changed
+    private byte[] dataStamp; //stamp of the data files, taken before they were read
     private Boolean gameRunning = true; //boolean for whether or not game is running
-    private Map<String, String> aMap; //map of actor ids to actors
-    private Map<String, String> mMap; //map of movie id to movie name
-    private Map<String, Set<String>> mToA; //map of movies to a set of actors
+    private SymbolTable<String> actors; //actor names <-> actor ids
+    private SymbolTable<String> movies; //movie titles <-> movie ids
+    private int[] castOffsets; //cast of movie m is castMembers[castOffsets[m] .. castOffsets[m+1])
+    private int[] castMembers; //actor ids of every cast, grouped by movie
+    private LabelStore labelStore; //interned edge labels, shared by every edge with the same movies
+    private volatile double separationError; //relative error allowed in the average separations of 'c', 0 for exact
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(); //queries share the universe, changes to it are exclusive
+    private final Object loading = new Object(); //held by one catalog load at a time; queries never wait on it
+
+    private static final long DEFAULT_CACHE_BYTES = 32L << 20; //default memory budget of the traversal cache
+    private static final double DEFAULT_SEPARATION_ERROR = 0.05; //relative error of 'c' when run with -approximate
+    private static final long BETWEENNESS_SEED = 1; //picks the sources of a sampled 'b', so repeated queries agree
 
     public Game (String actorFile, String movieFile, String actorToMovie) {
+        this(actorFile, movieFile, actorToMovie, DEFAULT_CACHE_BYTES);
+    }
+
+    public Game (String actorFile, String movieFile, String actorToMovie, long cacheBytes) {
+        this(actorFile, movieFile, actorToMovie, cacheBytes, false);
+    }
+
+    /**
+     * @param actorFile
+     * @param movieFile
+     * @param actorToMovie
+     * @param cacheBytes memory budget of the traversal cache
+     * @param bipartite if true, store actor-movie adjacency only rather than a co-star edge per pair of cast members
+     */
+    public Game (String actorFile, String movieFile, String actorToMovie, long cacheBytes, boolean bipartite) {
+        this(actorFile, movieFile, actorToMovie, cacheBytes, bipartite, false);
+    }
+
+    /**
+     * @param actorFile
+     * @param movieFile
+     * @param actorToMovie
+     * @param cacheBytes memory budget of the traversal cache
+     * @param bipartite if true, store actor-movie adjacency only rather than a co-star edge per pair of cast members
+     * @param mapped if true, query actor-movie adjacency kept in a graph file beside actorFile (written when missing
+     *               or stamped with other text files) through a memory mapping, holding only per-actor and per-movie
+     *               state in the heap; the universe is then read-only
+     */
+    public Game (String actorFile, String movieFile, String actorToMovie, long cacheBytes, boolean bipartite, boolean mapped) {
+        this.bipartite = bipartite || mapped;
+        this.mapped = mapped;
+        cache = new TraversalCache(cacheBytes);
+        Metrics.gauge("cache.hitRate", () -> cache.hits() + cache.misses() == 0 ? 0 : (double) cache.hits() / (cache.hits() + cache.misses()));
+        Metrics.gauge("cache.trees", () -> cache.size());
+        Metrics.gauge("cache.bytes", () -> cache.usedBytes());
         //create graph from file data
         graphCreation(actorFile, movieFile, actorToMovie);
     }
 
     /**
-     * Method to create graph
+     * Method to create graph, from a binary snapshot if there is one stamped with the text files as they are now. The new universe
+     * is read and indexed without holding the lock, so queries go on against the old one meanwhile; it then
+     * replaces the old one in a single swap under the write lock. Changes made to the old universe while the new
+     * one loads are replaced along with it.
      * @param pathA
      * @param pathM
      * @param pathMtoA
      */
     public void graphCreation(String pathA, String pathM, String pathMtoA) {
-        graph = new AdjacencyMapGraph<>();
-        aMap = new HashMap<>();
-        mMap = new HashMap<>();
-        mToA = new HashMap<>();
-        //create map from actor IDs to names
-        mapCreation(aMap, pathA);
-        //create map from movie IDs to movies
-        mapCreation(mMap, pathM);
-        //create map from movie to set of actors
-        movieActorMapCreation(mToA, pathMtoA);
-        //make a vertex for each actor
-        for (String actor : aMap.keySet()) {
-            graph.insertVertex(aMap.get(actor));
-        }
-        //loop through every movie
-        for (String movie : mToA.keySet()) {
-            //loop through each actor in a particular movie
-            for (String actor1 : mToA.get(movie)) {
-                //loop through the same set of actors as the line above
-                for (String actor2 : mToA.get(movie)) {
-                    //if the two actors aren't the same
-                    if (!actor1.equals(actor2)) {
-                        //if there isn't already an edge between the two actor vertices
-                        if (!graph.hasEdge(actor1, actor2)) {
-                            HashSet<String> temp = new HashSet<>();
-                            temp.add(movie);
-                            graph.insertUndirected(actor1, actor2, temp);
-                        } else {
-                            //add to an existing edge label (a set)
-                            graph.getLabel(actor1, actor2).add(movie);
-                        }
-                    }
+        long start = Metrics.start();
+        try {
+            Universe loaded;
+            synchronized (loading) {
+                loaded = createGraph(pathA, pathM, pathMtoA);
+            }
+            lock.writeLock().lock();
+            try {
+                publish(loaded);
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+        }
+        finally {
+            Metrics.stop("build", start);
+        }
+    }
+
+    /**
+     * Everything a catalog load builds, gathered off the lock before it is published
+     */
+    private static class Universe {
+        IndexedGraph<String, int[]> graph;
+        SymbolTable<String> actors, movies;
+        int[] castOffsets, castMembers;
+        LabelStore labelStore;
+        DegreeIndex degreeIndex;
+        Components components;
+        String[] dataFiles;
+        byte[] dataStamp;
+    }
+
+    private Universe createGraph(String pathA, String pathM, String pathMtoA) {
+        Universe u = new Universe();
+        u.dataFiles = new String[] {pathA, pathM, pathMtoA};
+        u.dataStamp = GraphSnapshot.stamp(u.dataFiles);
+        if (mapped) {
+            openMappedGraph(u, pathA, pathM, pathMtoA);
+            indexGraph(u);
+            return u;
+        }
+        String snapshot = pathA + ".snapshot";
+        u.labelStore = new LabelStore();
+        CompactGraph<String, int[]> coStars = null;
+        boolean loaded = false;
+        if (GraphSnapshot.isFresh(snapshot, u.dataStamp)) {
+            try {
+                long start = Metrics.start();
+                GraphSnapshot saved = GraphSnapshot.load(snapshot, u.labelStore, !bipartite);
+                u.actors = saved.actors();
+                u.movies = saved.movies();
+                u.castOffsets = saved.castOffsets();
+                u.castMembers = saved.castMembers();
+                coStars = saved.coStars();
+                loaded = true;
+                Metrics.stop("build.snapshotLoad", start);
+            } catch (IOException e) {
+                System.err.println("Cannot load snapshot, rebuilding from text files.\n" + e.getMessage());
+                u.labelStore = new LabelStore();
+            }
+        }
+        if (!loaded) {
+            //parse the three files in parallel, interning names and grouping actor ids by movie id
+            try {
+                DataIngest data = DataIngest.load(pathA, pathM, pathMtoA);
+                u.actors = data.actors();
+                u.movies = data.movies();
+                u.castOffsets = data.castOffsets();
+                u.castMembers = data.castMembers();
+            } catch (IOException e) {
+                System.err.println("Cannot read data files.\n" + e.getMessage());
+                u.actors = new SymbolTable<>();
+                u.movies = new SymbolTable<>();
+                u.castOffsets = new int[1];
+                u.castMembers = new int[0];
+            }
+        }
+
+        //either query the actor-movie graph directly or expand each movie into a clique of co-star edges
+        BipartiteGraph<String> actorMovieGraph = new BipartiteGraph<>(u.actors, u.movies.size(), u.castOffsets, u.castMembers);
+        if (!bipartite && coStars == null) {
+            long start = Metrics.start();
+            coStars = actorMovieGraph.project(u.labelStore);
+            Metrics.stop("build.cliques", start);
+        }
+        u.graph = bipartite ? actorMovieGraph : coStars;
+        if (!loaded) {
+            try {
+                long start = Metrics.start();
+                new GraphSnapshot(u.actors, u.movies, u.castOffsets, u.castMembers, coStars).save(snapshot, u.dataStamp);
+                Metrics.stop("build.snapshotSave", start);
+            } catch (IOException e) {
+                System.err.println("Cannot save snapshot.\n" + e.getMessage());
+            }
+        }
+        indexGraph(u);
+        return u;
+    }
+
+    /**
+     * Interns the names and maps the graph file beside the actor file, first writing it from the movie-actors file
+     * if it is missing, stamped with other text files, or unreadable. Casts stay in the file, not in castMembers.
+     * @param u
+     * @param pathA
+     * @param pathM
+     * @param pathMtoA
+     */
+    private void openMappedGraph(Universe u, String pathA, String pathM, String pathMtoA) {
+        String file = pathA + ".graph";
+        u.labelStore = new LabelStore();
+        u.castOffsets = new int[1];
+        u.castMembers = new int[0];
+        u.actors = new SymbolTable<>();
+        u.movies = new SymbolTable<>();
+        try {
+            long start = Metrics.start();
+            IntUnaryOperator actorIds = DataIngest.internNames(pathA, u.actors);
+            IntUnaryOperator movieIds = DataIngest.internNames(pathM, u.movies);
+            Metrics.stop("build.intern", start);
+            MappedGraph<String> mappedGraph = null;
+            if (GraphSnapshot.isFresh(file, u.dataStamp)) {
+                try {
+                    mappedGraph = MappedGraph.open(file, u.actors);
+                } catch (IOException e) {
+                    System.err.println("Cannot open graph file, rewriting it.\n" + e.getMessage());
                 }
             }
+            if (mappedGraph == null) {
+                start = Metrics.start();
+                MappedGraph.write(pathMtoA, actorIds, u.actors.size(), movieIds, u.movies.size(), file, u.dataStamp);
+                mappedGraph = MappedGraph.open(file, u.actors);
+                Metrics.stop("build.graphFile", start);
+            }
+            u.graph = mappedGraph;
+        } catch (IOException e) {
+            System.err.println("Cannot read data files.\n" + e.getMessage());
+            u.actors = new SymbolTable<>();
+            u.movies = new SymbolTable<>();
+            u.graph = new BipartiteGraph<>(u.actors, 0, u.castOffsets, u.castMembers);
         }
-        center = "Kevin Bacon"; //Setting center to Kevin Bacon
     }
 
     /**
-     * Method to create maps (aMap and mMap) that will serve as parameters for graphCreation
-     * @param map
-     * @param path
+     * Builds the degree and component indexes of a new graph
+     * @param u
+     */
+    private static void indexGraph(Universe u) {
+        long start = Metrics.start();
+        u.degreeIndex = new DegreeIndex(u.graph);
+        u.components = new Components(u.graph);
+        Metrics.stop("build.indexes", start);
+    }
+
+    /**
+     * Makes a loaded universe the current one and centers it on Kevin Bacon. Callers hold the write lock.
+     * @param u
      */
-    public void mapCreation(Map<String,String> map, String path) {
-        BufferedReader input;
+    private void publish(Universe u) {
+        graph = u.graph;
+        actors = u.actors;
+        movies = u.movies;
+        castOffsets = u.castOffsets;
+        castMembers = u.castMembers;
+        labelStore = u.labelStore;
+        degreeIndex = u.degreeIndex;
+        components = u.components;
+        dataFiles = u.dataFiles;
+        dataStamp = u.dataStamp;
+        cache.invalidate(); //trees from any earlier graph are stale
+        betweenness = null;
+        distanceIndex = null;
+        center = actors.indexOf("Kevin Bacon"); //Setting center to Kevin Bacon
+    }
+
+    /**
+     * Adds a movie and its cast, creating any actors not yet in the universe. Edges and labels are updated in place
+     * and the center's shortest path tree is repaired rather than rebuilt; other cached trees are dropped.
+     * Changes are made in memory only, not to the data files or snapshot.
+     * @param title
+     * @param cast names of the actors in the movie
+     * @throws IllegalArgumentException if the movie is already in the universe
+     * @throws UnsupportedOperationException if the graph is mapped from a file
+     */
+    public void addMovie(String title, Collection<String> cast) {
+        lock.writeLock().lock();
         try {
-            input = new BufferedReader(new FileReader(path));
-        } catch (FileNotFoundException e) {
-            System.err.println("Cannot open file.\n" + e.getMessage());
-            return;
+            if (mapped) throw new UnsupportedOperationException("The universe is read-only when mapped from a graph file");
+            int movie = movies.indexOf(title);
+            if (movie >= 0 && castOffsets[movie + 1] > castOffsets[movie]) {
+                throw new IllegalArgumentException(title + " is already in the universe");
+            }
+            movie = movies.intern(title); //reuses the id of a removed movie
+            int[] ids = new int[cast.size()];
+            int size = 0;
+            for (String name : cast) ids[size++] = actors.intern(name);
+            Arrays.sort(ids);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) if (i == 0 || ids[i] != ids[i - 1]) ids[distinct++] = ids[i];
+            updateCast(movie, Arrays.copyOf(ids, distinct));
+        }
+        finally {
+            lock.writeLock().unlock();
         }
+    }
+
+    /**
+     * Removes a movie's cast from the universe. Actors stay in the universe even if they have no movies left.
+     * Edges and labels are updated in place and the center's shortest path tree is repaired rather than rebuilt.
+     * @param title
+     * @return false if the movie isn't in the universe
+     * @throws UnsupportedOperationException if the graph is mapped from a file
+     */
+    public boolean removeMovie(String title) {
+        lock.writeLock().lock();
         try {
-            String line;
-            //continue till the line read from the file is null (EOF)
-            while ((line = input.readLine()) != null) {
-                //split the line into two strings based on where the vertical line
-                String[] words = line.split("\\|");
-                //add to map with key being the ID and value being the name/title
-                map.put(words[0], words[1]);
+            if (mapped) throw new UnsupportedOperationException("The universe is read-only when mapped from a graph file");
+            int movie = movies.indexOf(title);
+            if (movie < 0 || castOffsets[movie + 1] == castOffsets[movie]) return false;
+            updateCast(movie, new int[0]);
+            return true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the cast of a movie (appending the movie if it is new) in the cast lists and the graph,
+     * then repairs the center's tree around the actors whose edges changed
+     * @param movie
+     * @param cast actor ids, sorted and without repeats
+     */
+    private void updateCast(int movie, int[] cast) {
+        int[] old = movie + 1 < castOffsets.length ? Arrays.copyOfRange(castMembers, castOffsets[movie], castOffsets[movie + 1]) : new int[0];
+        int[][] spliced = BipartiteGraph.spliceRow(castOffsets, castMembers, movie, cast);
+        castOffsets = spliced[0];
+        castMembers = spliced[1];
+        if (bipartite) ((BipartiteGraph<String>) graph).setCast(movie, cast);
+        else updateCoStars(movie, old, cast);
+
+        int[] touched = new int[old.length + cast.length];
+        System.arraycopy(old, 0, touched, 0, old.length);
+        System.arraycopy(cast, 0, touched, old.length, cast.length);
+        degreeIndex.update(graph, touched); //only cast members gain or lose co-stars
+        //a removed cast can only split its own component, and an added cast can only merge components
+        if (old.length > 0) components = components.split(graph, old);
+        if (cast.length > 0) components = components.joined(graph.numVertices(), cast);
+        betweenness = null; //shortest paths through the cast have changed
+        distanceIndex = null;
+        dataFiles = null; //an index saved beside the data files no longer describes the universe
+        dataStamp = null;
+        ShortestPathTree centerTree = center >= 0 ? cache.get(center) : null;
+        cache.invalidate(); //other trees are stale
+        if (centerTree != null) {
+            GraphLibrary.repairBfs(graph, centerTree, touched);
+            cache.put(centerTree);
+        }
+    }
+
+    /**
+     * Moves a movie from the labels of every pair of its old cast to every pair of its new cast, adding or
+     * removing co-star edges whose labels gain their first movie or lose their last
+     * @param movie
+     * @param old
+     * @param cast
+     */
+    private void updateCoStars(int movie, int[] old, int[] cast) {
+        CompactGraph<String, int[]> coStars = (CompactGraph<String, int[]>) graph;
+        int[] members = new int[old.length + cast.length];
+        System.arraycopy(old, 0, members, 0, old.length);
+        System.arraycopy(cast, 0, members, old.length, cast.length);
+        Arrays.sort(members);
+        int distinct = 0;
+        for (int i = 0; i < members.length; i++) if (i == 0 || members[i] != members[i - 1]) members[distinct++] = members[i];
+
+        int pairs = distinct * (distinct - 1);
+        int[] sources = new int[pairs], targets = new int[pairs];
+        int[][] labels = new int[pairs][];
+        int changes = 0;
+        for (int i = 0; i < distinct; i++) {
+            for (int j = 0; j < distinct; j++) {
+                int a = members[i], b = members[j];
+                if (a == b) continue;
+                boolean inMovie = Arrays.binarySearch(cast, a) >= 0 && Arrays.binarySearch(cast, b) >= 0;
+                int[] label = a < coStars.outOffsets.length - 1 && b < coStars.outOffsets.length - 1 ? coStars.labelBetween(a, b) : null;
+                int[] updated = withMovie(label, movie, inMovie);
+                if (updated == label) continue;
+                sources[changes] = a;
+                targets[changes] = b;
+                labels[changes++] = updated;
             }
-        } catch (IOException e) {
-            System.err.println("IO error while reading.\n" + e.getMessage());
         }
+        coStars.updateEdges(Arrays.copyOf(sources, changes), Arrays.copyOf(targets, changes), Arrays.copyOf(labels, changes));
+    }
+
+    /**
+     * An edge label with a movie added or taken out, interned
+     * @param label sorted movie ids, or null for no edge
+     * @param movie
+     * @param present whether the movie should be in the label
+     * @return the same label if nothing changes, null if no movies are left
+     */
+    private int[] withMovie(int[] label, int movie, boolean present) {
+        int[] ids = label == null ? new int[0] : label;
+        int i = Arrays.binarySearch(ids, movie);
+        if ((i >= 0) == present) return label;
+        int[] updated;
+        if (present) {
+            i = -i - 1;
+            updated = new int[ids.length + 1];
+            System.arraycopy(ids, 0, updated, 0, i);
+            updated[i] = movie;
+            System.arraycopy(ids, i, updated, i + 1, ids.length - i);
+        }
+        else {
+            updated = new int[ids.length - 1];
+            System.arraycopy(ids, 0, updated, 0, i);
+            System.arraycopy(ids, i + 1, updated, i, ids.length - i - 1);
+        }
+        return updated.length == 0 ? null : labelStore.intern(updated);
+    }
+
+    /**
+     * Hands the names of a list of actor ids to a consumer one at a time
+     * @param ids
+     * @param out
+     */
+    private void actorNames(int[] ids, Consumer<String> out) {
+        long start = Metrics.start();
+        for (int id : ids) out.accept(actors.symbol(id));
+        Metrics.stop("names", start);
+    }
+
+    /**
+     * Collects the lines a query hands to its consumer
+     * @param query
+     * @return
+     */
+    private static List<String> collect(Consumer<Consumer<String>> query) {
+        List<String> lines = new ArrayList<>();
+        query.accept(lines::add);
+        return lines;
+    }
+
+    /**
+     * Titles of an edge label's movie ids, for printing
+     * @param ids
+     * @return
+     */
+    private List<String> movieTitles(int[] ids) {
+        List<String> titles = new ArrayList<>(ids.length);
+        for (int id : ids) titles.add(movies.symbol(id));
+        return titles;
+    }
+
+    /**
+     * Chooses how breadth first searches are run
+     * @param mode
+     */
+    public void setTraversalMode(TraversalMode mode) {
+        traversal = mode;
+        cache.invalidate();
+    }
+
+    /**
+     * Chooses whether 'c' ranks actors by exact average separation (one search per actor) or by estimates
+     * from neighborhood sketches, which take near linear time
+     * @param relativeError relative standard error of the estimates, or 0 for exact separations
+     */
+    public void setSeparationError(double relativeError) {
+        if (relativeError < 0 || relativeError >= 1) throw new IllegalArgumentException("Relative error must be in [0, 1): " + relativeError);
+        separationError = relativeError;
+    }
+
+    /**
+     * Ranks every actor by estimated average separation and returns the front (num < 0) or end (num > 0) of the ranking
+     * @param num
+     * @return
+     */
+    private int[] approximateCenters(int num) {
+        //estimating every actor's distances at once, then storing each actor's avg separation
+        //in an array so the comparator doesn't have to recompute it
+        double[] actorsToSep = new double[graph.numVertices()];
+        double[] reach = new double[actorsToSep.length];
+        double[] distanceSums = new double[actorsToSep.length];
+        GraphLibrary.approximateSeparation(graph, separationError, reach, distanceSums);
+
+        //Instantiating list of actors to be sorted by AvgSep
+        ArrayList<Integer> actorsByAvgSep =  new ArrayList<Integer> ();
+        for (int vert = 0; vert < graph.numVertices(); vert++) { //Loop through vertices
+            actorsToSep[vert] = reach[vert] == 0 ? 0 : distanceSums[vert] / reach[vert]; //get average separation
+            actorsByAvgSep.add (vert); //add vertex to list
+        }
+
+        //Nested Comparator class that will be used to sort the list
+        class AvgSepComparator implements Comparator<Integer> {
+            public int compare(Integer p1, Integer p2) { //compares average separation for the two actors
+                return Double.compare(actorsToSep[p1], actorsToSep[p2]);
+            }
+        }
+        long start = Metrics.start();
+        actorsByAvgSep.sort(new AvgSepComparator()); //Sorts list
+        Metrics.stop("sort", start);
+
+        //negative numbers take from the front of the list, positive from the end
+        List<Integer> ids = num < 0 ? actorsByAvgSep.subList(0, -num) : actorsByAvgSep.subList(actorsByAvgSep.size() - num, actorsByAvgSep.size());
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) result[i] = ids.get(i);
+        return result;
+    }
+
+    /**
+     * Shortest path tree for a source, from the cache when possible
+     * @param source
+     * @return
+     */
+    private ShortestPathTree tree(int source) {
+        return cache.get(source, s -> GraphLibrary.bfs(graph, s, traversal));
+    }
+
+    /**
+     * Cache of shortest path trees, for hit/miss statistics
+     * @return
+     */
+    public TraversalCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Prints how well connected the current center of the universe is
+     */
+    public void printCenter() {
+        print(centerSummary(center));
+    }
+
+    /**
+     * Prints a command's result, timing the printing apart from the query
+     * @param result
+     */
+    private void print(Object result) {
+        long start = Metrics.start();
+        System.out.println(result);
+        Metrics.stop("print", start);
+    }
+
+    /*
+     * Queries behind the commands, each against a center passed in rather than the console's current center, so
+     * any number of them can run at once (changes to the universe wait for running queries to finish)
+     */
+
+    /**
+     * Id of an actor
+     * @param name
+     * @return -1 if the actor isn't in the universe
+     */
+    public int actorId(String name) {
+        lock.readLock().lock();
         try {
-            input.close();
-        } catch (IOException e) {
-            System.err.println("Cannot close file.\n" + e.getMessage());
+            return actors.indexOf(name);
+        }
+        finally {
+            lock.readLock().unlock();
         }
     }
 
     /**
-     * Method to create a map (mToA) that will serve as a parameter for graphCreation
-     * @param map
-     * @param path
+     * Name of an actor
+     * @param id
+     * @return
      */
-    public void movieActorMapCreation(Map<String, Set<String>> map, String path) {
-        BufferedReader input;
+    public String actorName(int id) {
+        lock.readLock().lock();
         try {
-            input = new BufferedReader(new FileReader(path));
-        } catch (FileNotFoundException e) {
-            System.err.println("Cannot open file.\n" + e.getMessage());
-            return;
+            return actors.symbol(id);
         }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Id of the console's current center of the universe
+     * @return
+     */
+    public int center() {
+        return center;
+    }
+
+    /**
+     * How well connected a center of the universe is ('u')
+     * @param center
+     * @return
+     */
+    public String centerSummary(int center) {
+        long start = Metrics.start();
+        lock.readLock().lock();
+        try {
+            SeparationStats stats = GraphLibrary.separationStats(graph, center); //counts only, no tree to build or cache
+            return actors.symbol(center) + " is now the center of the acting universe, connected to " +
+                    stats.reach() + "/" +  graph.numVertices()+ " actors with average separation " +
+                    stats.averageSeparation();
+        }
+        finally {
+            lock.readLock().unlock();
+            Metrics.stop("command.u", start);
+        }
+    }
+
+    /**
+     * Path from a person to a center, one line per link naming the movies that make it ('p')
+     * @param person
+     * @param center
+     * @return null if the person's number is infinity
+     */
+    public List<String> pathToCenter(int person, int center) {
+        long start = Metrics.start();
+        lock.readLock().lock();
+        try {
+            if (!components.connected(person, center)) return null; //no path to search for
+            LabeledPath<int[]> path = GraphLibrary.bidirectionalPath(graph, person, center); //gets path to center
+            if (path == null) return null;
+            List<String> links = new ArrayList<>(path.length());
+            for (int i = 0; i < path.length(); i++) { //walking toward the center
+                links.add(actors.symbol(path.vertex(i)) + " appeared in " + movieTitles(path.label(i)) + " with " + actors.symbol(path.vertex(i+1)));
+            }
+            return links;
+        }
+        finally {
+            lock.readLock().unlock();
+            Metrics.stop("command.p", start);
+        }
+    }
+
+    /**
+     * Separation between any two actors, from the distance index rather than a search ('a')
+     * @param a
+     * @param b
+     * @return the separation, or -1 if it is infinity
+     */
+    public int separation(int a, int b) {
+        long start = Metrics.start();
+        lock.readLock().lock();
+        try {
+            return distanceIndex().distance(a, b);
+        }
+        finally {
+            lock.readLock().unlock();
+            Metrics.stop("command.a", start);
+        }
+    }
+
+    /**
+     * Separations of many pairs of actors at once
+     * @param from
+     * @param to
+     * @return separation of from[i] and to[i] at i, -1 for infinity
+     */
+    public int[] separations(int[] from, int[] to) {
+        lock.readLock().lock();
         try {
-            String line;
-            //continue till line read from the file is null (EOF)
-            while ((line = input.readLine()) != null) {
-                //split the line into two strings based on where the vertical line
-                String[] words = line.split("\\|");
-                //get names from maps based on IDs as keys
-                String movie = mMap.get(words[0]);
-                String actor = aMap.get(words[1]);
-                //if a movie title hasn't been added to the map
-                if (!map.containsKey(movie)) {
-                    HashSet<String> temp = new HashSet<>();
-                    temp.add(actor);
-                    map.put(movie, temp);
-                } else {
-                    //add to an existing set of actor names
-                    map.get(movie).add(actor);
+            return distanceIndex().distances(from, to);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The exact betweenness of every actor, worked out by the first caller while any others wait for it.
+     * Callers hold the read lock, so the universe can't change while it is worked out.
+     * @return
+     */
+    private synchronized double[] betweenness() {
+        if (betweenness == null) betweenness = GraphLibrary.betweenness(graph);
+        return betweenness;
+    }
+
+    /**
+     * The distance index of the universe. While the universe matches the data files, it is kept in a file beside
+     * the actor file: loaded if that file is stamped with the data files, otherwise built and saved there.
+     * Callers hold the read lock, so the universe can't change while the index is made.
+     * @return
+     */
+    private synchronized DistanceIndex distanceIndex() {
+        if (distanceIndex != null) return distanceIndex;
+        String[] files = dataFiles;
+        String path = files == null ? null : files[0] + ".labels";
+        DistanceIndex index = null;
+        if (path != null && GraphSnapshot.isFresh(path, dataStamp)) {
+            try {
+                index = DistanceIndex.load(path);
+                if (index.numVertices() != graph.numVertices()) index = null;
+            } catch (IOException e) {
+                System.err.println("Cannot load distance index, rebuilding it.\n" + e.getMessage());
+            }
+        }
+        if (index == null) {
+            index = new DistanceIndex(graph);
+            if (path != null) {
+                try {
+                    index.save(path, dataStamp);
+                } catch (IOException e) {
+                    System.err.println("Cannot save distance index.\n" + e.getMessage());
                 }
             }
-        } catch (IOException e) {
-            System.err.println("IO error while reading.\n" + e.getMessage());
         }
+        distanceIndex = index;
+        return index;
+    }
+
+    /**
+     * Actors with infinite separation from a center ('i')
+     * @param center
+     * @return
+     */
+    public List<String> infiniteSeparation(int center) {
+        return collect(out -> infiniteSeparation(center, out));
+    }
+
+    /**
+     * Hands each actor with infinite separation from a center to a consumer as it is found
+     * @param center
+     * @param out
+     */
+    public void infiniteSeparation(int center, Consumer<String> out) {
+        long start = Metrics.start();
+        lock.readLock().lock();
         try {
-            input.close();
-        } catch (IOException e) {
-            System.err.println("Cannot close file.\n" + e.getMessage());
+            actorNames(components.outside(components.componentOf(center)), out); //everyone outside the center's component
+        }
+        finally {
+            lock.readLock().unlock();
+            Metrics.stop("command.i", start);
+        }
+    }
+
+    /**
+     * Actors whose separation from a center is between low and high, sorted by separation ('s')
+     * @param center
+     * @param low
+     * @param high
+     * @return
+     */
+    public List<String> separationRange(int center, int low, int high) {
+        return collect(out -> separationRange(center, low, high, out));
+    }
+
+    /**
+     * Hands each actor whose separation from a center is between low and high to a consumer, in order of separation
+     * @param center
+     * @param low
+     * @param high
+     * @param out
+     */
+    public void separationRange(int center, int low, int high, Consumer<String> out) {
+        long start = Metrics.start();
+        lock.readLock().lock();
+        try {
+            //the center's tree keeps its vertices grouped by distance, so the range is one slice, already sorted
+            actorNames(tree(center).verticesBetween(low, high), out);
+        }
+        finally {
+            lock.readLock().unlock();
+            Metrics.stop("command.s", start);
         }
     }
 
+    /**
+     * Actors with between low and high co-stars, sorted by number of co-stars ('d')
+     * @param low
+     * @param high
+     * @return
+     */
+    public List<String> degreeRange(int low, int high) {
+        return collect(out -> degreeRange(low, high, out));
+    }
+
+    /**
+     * Hands each actor with between low and high co-stars to a consumer, in order of number of co-stars
+     * @param low
+     * @param high
+     * @param out
+     */
+    public void degreeRange(int low, int high, Consumer<String> out) {
+        long start = Metrics.start();
+        lock.readLock().lock();
+        try {
+            actorNames(degreeIndex.range(low, high), out);
+        }
+        finally {
+            lock.readLock().unlock();
+            Metrics.stop("command.d", start);
+        }
+    }
+
+    /**
+     * Top (num > 0) or bottom (num < 0) centers of the universe, sorted by average separation ('c')
+     * @param num
+     * @return
+     * @throws IllegalArgumentException if the magnitude of num is larger than the number of actors
+     */
+    public List<String> centers(int num) {
+        return collect(out -> centers(num, out));
+    }
 
+    /**
+     * Hands the top or bottom centers of the universe to a consumer, in order of average separation
+     * @param num
+     * @param out
+     * @throws IllegalArgumentException if the magnitude of num is larger than the number of actors
+     */
+    public void centers(int num, Consumer<String> out) {
+        long start = Metrics.start();
+        lock.readLock().lock();
+        try {
+            if (Math.abs(num) > graph.numVertices()) throw new IllegalArgumentException("Magnitude larger than list size.");
+            if (separationError > 0) actorNames(approximateCenters(num), out);
+            //only |num| centers are wanted, so searches that can't make the cut stop early:
+            //negative numbers want the front of the ranking (smallest separations), positive the end
+            else actorNames(GraphLibrary.topCenters(graph, Math.abs(num), num > 0), out);
+        }
+        finally {
+            lock.readLock().unlock();
+            Metrics.stop("command.c", start);
+        }
+    }
+
+    /**
+     * The num actors with the highest betweenness, the bridges that the most shortest paths between other actors
+     * pass through, each with its betweenness ('b'). Exact betweenness is worked out once and kept until the
+     * universe changes.
+     * @param num
+     * @param samples number of sampled sources to estimate betweenness from, or 0 for exact
+     * @return lines of name and betweenness, highest first
+     * @throws IllegalArgumentException if num is negative or larger than the number of actors, or samples is negative
+     */
+    public List<String> bridges(int num, int samples) {
+        return collect(out -> bridges(num, samples, out));
+    }
+
+    /**
+     * Hands the lines of the num actors with the highest betweenness to a consumer, highest first
+     * @param num
+     * @param samples number of sampled sources to estimate betweenness from, or 0 for exact
+     * @param out
+     * @throws IllegalArgumentException if num is negative or larger than the number of actors, or samples is negative
+     */
+    public void bridges(int num, int samples, Consumer<String> out) {
+        long start = Metrics.start();
+        lock.readLock().lock();
+        try {
+            int n = graph.numVertices();
+            if (num < 0 || num > n) throw new IllegalArgumentException("Number must be between 0 and the number of actors.");
+            if (samples < 0) throw new IllegalArgumentException("Number of sampled sources can't be negative.");
+            if (num == 0) return;
+            double[] scores = samples > 0 && samples < n ? GraphLibrary.betweenness(graph, samples, BETWEENNESS_SEED) : betweenness();
+            //highest betweenness first, ties by id
+            double[] ranked = scores;
+            ArrayList<Integer> actorsByBetweenness = new ArrayList<Integer>();
+            for (int vert = 0; vert < n; vert++) actorsByBetweenness.add(vert);
+            actorsByBetweenness.sort((a, b) -> ranked[a] != ranked[b] ? Double.compare(ranked[b], ranked[a]) : Integer.compare(a, b));
+            for (int i = 0; i < num; i++) {
+                int actor = actorsByBetweenness.get(i);
+                out.accept(String.format("%s (%.1f)", actors.symbol(actor), ranked[actor]));
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+            Metrics.stop("command.b", start);
+        }
+    }
 
     /**
      * method to handle key being pressed
@@ -158,12 +878,10 @@ public class Game {
             Scanner in = new Scanner (System.in);
             String input = in.nextLine();
 
-            if (graph.hasVertex(input)) { // checks if this person is in the universe
-                center = input; //changes center to person
+            if (actorId(input) >= 0) { // checks if this person is in the universe
+                center = actorId(input); //changes center to person
                 //print info for new center of the universe
-                System.out.println(center + " is now the center of the acting universe, connected to " +
-                        (GraphLibrary.bfs(graph, center).numVertices()-1) + "/" +  graph.numVertices()+ " actors with average separation " +
-                        GraphLibrary.averageSeparation(GraphLibrary.bfs(graph, center), center));
+                printCenter();
             }
             else System.out.println(input + " is not in the universe");
         }
@@ -175,32 +893,29 @@ public class Game {
             Scanner in = new Scanner (System.in);
             String input = in.nextLine();
 
+            int person = actorId(input);
             //checks to see if this person is not in the universe
-            if (!graph.hasVertex(input)) {
+            if (person < 0) {
                 System.out.println (input + " is not in the universe");
             }
 
             else {
-                if (!GraphLibrary.bfs(graph, center).hasVertex(input)) { //checks if person is not connected to center
+                List<String> links = pathToCenter(person, center); //gets path to center
+                if (links == null) { //checks if person is not connected to center
                     System.out.println(input + "'s number is infinity.");
                 }
                 else { //if connected to center
-                    List<String> path = GraphLibrary.getPath (GraphLibrary.bfs(graph, center), input); //gets path to center
-                    System.out.println(input + "'s number is " + (path.size() - 1)); //prints distance number from center
-                    while (path.size() > 1) { //while loop to print path links and movies that connect them (path length is decremented each time)
-                        String person1 = path.get(path.size()-1);
-                        String person2 = path.get(path.size()-2);
-                        System.out.println(person1 + " appeared in " + graph.getLabel(person1,person2) + " with " + person2);
-                        path.remove(path.size()-1); //gets rid of last person in path
-                    }
+                    System.out.println(input + "'s number is " + links.size()); //prints distance number from center
+                    long start = Metrics.start();
+                    for (String link : links) System.out.println(link); //path links and movies that connect them
+                    Metrics.stop("print", start);
                 }
             }
         }
 
         //prints actors that have infinite separation from center
         else if (k == 'i') {
-            System.out.println("Actors with infinite separation from " + center + ": " +
-                    GraphLibrary.missingVertices (graph, GraphLibrary.bfs(graph, center))); //calls missing vertices function from GraphLibrary
+            print("Actors with infinite separation from " + actorName(center) + ": " + infiniteSeparation(center));
         }
 
         //Lists actors sorted by non infinite separation between low and high separation
@@ -214,33 +929,7 @@ public class Game {
                 in = new Scanner(System.in);
                 int high = Integer.parseInt(in.nextLine());
 
-                ArrayList<String> actorsInRange = new ArrayList<String>(); //List for actors with separation between low and high
-                Graph<String, Set<String>> centerTree = GraphLibrary.bfs(graph, center); //graph tree for the center of the universe
-                for (String vert : graph.vertices()) { //loop through vertices
-                    List<String> path = GraphLibrary.getPath(centerTree, vert);
-                    //if vertex has separation between low and high, add to list
-                    if (path.size() >= low + 1 && path.size() <= high + 1) {
-                        actorsInRange.add(vert);
-                    }
-                }
-
-                //Nested Comparator class that will be used to sort this list
-                class SeparationComparator implements Comparator<String> {
-                    public int compare(String p1, String p2) { //takes in 2 pple
-                        //get their paths
-                        List<String> path1 = GraphLibrary.getPath(centerTree, p1);
-                        List<String> path2 = GraphLibrary.getPath(centerTree, p2);
-                        //compare path lengths
-                        if (path1.size() < path2.size()) return -1;
-                        else if (path1.size() == path2.size()) return 0;
-                        else return 1;
-                    }
-                }
-
-                //sort list with comparator
-                actorsInRange.sort(new SeparationComparator());
-
-                System.out.println(actorsInRange);
+                print(separationRange(center, low, high));
             }
             catch (NumberFormatException e) {
                 System.err.println("Not an integer.\n" + e.getMessage());
@@ -262,25 +951,8 @@ public class Game {
 
                 if (high < low) System.out.println("High must be greater than low."); //checks if high is less than low
                 else {
-                    ArrayList<String> actorsByDegree = new ArrayList<String>(); //List of actors with degrees between low and high
-                    for (String vert : graph.vertices()) { //loops though vertices
-                        //if actor degress is in range, add to list
-                        if (graph.outDegree(vert) >= low && graph.outDegree(vert) <= high)
-                        actorsByDegree.add(vert);
-                    }
-
-                    //Nested Comparator class that will be used to sort this list
-                    class DegreeComparator implements Comparator<String> {
-                        public int compare(String p1, String p2) { //compares degrees
-                            if (graph.outDegree(p1) < graph.outDegree(p2)) return -1;
-                            else if (graph.outDegree(p1) == graph.outDegree(p2)) return 0;
-                            else return 1;
-                        }
-                    }
-
-                    actorsByDegree.sort(new DegreeComparator()); //sorts list
-
-                    System.out.println(actorsByDegree);
+                    //actors with degrees between low and high, already sorted by degree
+                    print(degreeRange(low, high));
                 }
             }
             catch (NumberFormatException e) {
@@ -290,66 +962,101 @@ public class Game {
 
         //Lists top or bottom (depending on sign of user input) centers of the universe, sorted by average separation
         else if (k == 'c') {
-            System.out.println("This may take up to a minute. Enter valid integer when program says 'Go:'");
-
-            //Creating a map to store actors and their respective avg separation as centers of the universe
-            //This allows for much faster run time (< 1 min and only runs bfs once for each vertex)
-            //than doing it in the comparator, so sorting is much faster
-            Map actorsToSep = new HashMap<String,Double> ();
+            System.out.println("This may take a few seconds. Enter valid integer when program says 'Go:'");
+            System.out.println("Go:"); //Go statement so user knows the program is ready for input
 
-            //Instantiating list of actors to be sorted by AvgSep
-            ArrayList<String> actorsByAvgSep =  new ArrayList<String> ();
+            try {
 
-            for (String vert : graph.vertices()) { //Loop through vertices
-                double avgSep = GraphLibrary.averageSeparation(GraphLibrary.bfs(graph,vert), vert); //get average separation
-                actorsToSep.put (vert, avgSep); //insert actor name and avg separation into map
-                actorsByAvgSep.add (vert); //add vertex to list
+                Scanner in = new Scanner(System.in);
+                int num = Integer.parseInt(in.nextLine());
+                print(centers(num));
             }
+            catch (NumberFormatException e){ System.err.println("Not an integer.\n" + e.getMessage()); }
+            //prints error if the magnitude of the input is larger than the list size
+            catch (IllegalArgumentException e) { System.err.println(e.getMessage()); }
+        }
 
-            //Nested Comparator class that will be used to sort the list
-            class AvgSepComparator implements Comparator<String> {
-                public int compare(String p1, String p2) { //compares average separation for the string inputs
-                    double p1Sep = (double) actorsToSep.get(p1); //gets average separation from map
-                    double p2Sep = (double) actorsToSep.get(p2); //gets average separation from map
-                    if (p1Sep < p2Sep) return -1;
-                    else if (p1Sep == p2Sep) return 0;
-                    else return 1;
-                }
+        //separation between any two actors, not just from the center
+        else if (k == 'a') {
+            System.out.println("Enter first person:");
+            Scanner in = new Scanner (System.in);
+            String first = in.nextLine();
+            System.out.println("Enter second person:");
+            String second = in.nextLine();
+
+            int a = actorId(first), b = actorId(second);
+            if (a < 0) System.out.println(first + " is not in the universe");
+            else if (b < 0) System.out.println(second + " is not in the universe");
+            else {
+                int separation = separation(a, b);
+                System.out.println(first + " and " + second + " are separated by " + (separation < 0 ? "infinity" : String.valueOf(separation)) + ".");
             }
-            actorsByAvgSep.sort(new AvgSepComparator()); //Sorts list
+        }
 
-            System.out.println("Go:"); //Go statement so user knows the program is ready for input
+        //Lists the actors that the most shortest paths pass through, the bridges between distant parts of the universe
+        else if (k == 'b') {
+            System.out.println("Exact betweenness takes a while the first time; to estimate it, follow the number with a number of sampled sources.");
+            System.out.println("Go:");
 
             try {
-
                 Scanner in = new Scanner(System.in);
-                int num = Integer.parseInt(in.nextLine());
-                //prints error if the magnitude of the input is larger than the list size
-                if (Math.abs(num) > actorsByAvgSep.size()) System.err.println("Magnitude larger than list size.");
-                else {
-                    ArrayList<String> smallList = new ArrayList<String> (); //small list of items to be printed
-                    if (num < 0) { //if user entered a negative number, return the absolute value of that number of items from front of the list
-                        smallList.addAll(actorsByAvgSep.subList(0,num*(-1)));
-                    }
-                    if (num > 0) { //if user entered a positive number, return that number of items from end of the list
-                        smallList.addAll(actorsByAvgSep.subList(actorsByAvgSep.size()-num, actorsByAvgSep.size()));
-                    }
-                    System.out.println(smallList);
-                }
-
+                String[] words = in.nextLine().trim().split("\\s+");
+                int num = Integer.parseInt(words[0]);
+                int samples = words.length > 1 ? Integer.parseInt(words[1]) : 0;
+                print(bridges(num, samples));
             }
             catch (NumberFormatException e){ System.err.println("Not an integer.\n" + e.getMessage()); }
+            catch (IllegalArgumentException e) { System.err.println(e.getMessage()); }
         }
     }
 
 
     public static void main(String[] args){
 
-        //instantiating game
-        Game game = new Game ("PS4/actors.txt", "PS4/movies.txt", "PS4/movie-actors.txt");
+        //instantiating game (pass -bipartite to keep actor-movie adjacency instead of co-star cliques,
+        //-mapped to keep it in a memory-mapped graph file instead of the heap,
+        //-approximate or -approximate=<relative error> to estimate average separations in 'c',
+        //-serve or -serve=<port> to answer queries from clients on localhost instead of the console,
+        //and -metrics or -metrics=<seconds> to record timings and print them to stderr every so often)
+        boolean bipartite = false, mapped = false;
+        double separationError = 0;
+        int port = -1;
+        long metricsPeriod = 0;
+        for (String arg : args) {
+            if (arg.equals("-bipartite")) bipartite = true;
+            else if (arg.equals("-mapped")) mapped = true;
+            else if (arg.equals("-metrics")) metricsPeriod = 60;
+            else if (arg.startsWith("-metrics=")) metricsPeriod = Long.parseLong(arg.substring("-metrics=".length()));
+            else if (arg.equals("-serve")) port = GameServer.DEFAULT_PORT;
+            else if (arg.startsWith("-serve=")) port = Integer.parseInt(arg.substring("-serve=".length()));
+            else if (arg.equals("-approximate")) separationError = DEFAULT_SEPARATION_ERROR;
+            else if (arg.startsWith("-approximate=")) separationError = Double.parseDouble(arg.substring("-approximate=".length()));
+        }
+        //metrics can also be switched on and read through JMX, as game:type=Metrics
+        try {
+            Metrics.exportToJmx();
+        }
+        catch (javax.management.JMException e) { System.err.println("Cannot export metrics.\n" + e.getMessage()); }
+        if (metricsPeriod > 0) {
+            Metrics.enable(true);
+            Metrics.startDump(System.err, metricsPeriod, java.util.concurrent.TimeUnit.SECONDS);
+        }
+        Game game = new Game ("PS4/actors.txt", "PS4/movies.txt", "PS4/movie-actors.txt", DEFAULT_CACHE_BYTES, bipartite, mapped);
+        game.setSeparationError(separationError);
+
+        if (port >= 0) {
+            try (GameServer server = new GameServer(game, port)) {
+                System.out.println("Answering queries on localhost:" + server.port());
+                server.run();
+            }
+            catch (IOException e) { System.err.println("Cannot serve queries.\n" + e.getMessage()); }
+            return;
+        }
 
         //printing game info
         System.out.println("\nCommands (enter command letter and hit enter before typing in command parameters):");
+        System.out.println("a <name> <name>: find the separation between any two actors (enter each name on its own line)");
+        System.out.println("b <#> [<sources>]: list the <#> actors with the highest betweenness (the bridges most shortest paths pass through), estimated from <sources> sampled sources if given");
         System.out.println("c <#>: list top (positive number) or bottom (negative) <#> centers of the universe, sorted by average separation");
         System.out.println("d <low> <high>: list actors sorted by degree, with degree between low and high");
         System.out.println("i: list actors with infinite separation from the current center");
@@ -359,15 +1066,13 @@ public class Game {
         System.out.println("q: quit game\n");
 
         //prints center of the universe
-        System.out.println(game.center + " is now the center of the acting universe, connected to " +
-                (GraphLibrary.bfs(game.graph, game.center).numVertices()-1) + "/" +  game.graph.numVertices()+ " actors with average separation " +
-                GraphLibrary.averageSeparation(GraphLibrary.bfs(game.graph, game.center), game.center));
+        game.printCenter();
 
         //while loop to see if game is running (if user has not pressed q yet)
         while (game.gameRunning) {
             //try catch block for reading ket pressed by user
             try {
-                System.out.print("\n" + game.center + " game >\n"); //Stating what game it is (who is center of universe)
+                System.out.print("\n" + game.actorName(game.center) + " game >\n"); //Stating what game it is (who is center of universe)
                 BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
                 char input = (char) reader.read(); //cast to character
                 game.handleKeyPress(input); //calls handleKeyPress function
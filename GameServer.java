@@ -0,0 +1,350 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Serves the Game's queries to any number of clients over a line-based protocol on localhost.
+ * Each connection gets its own thread (a virtual thread on Java 21 and later) and its own center of the
+ * universe, starting at the game's, so clients never disturb each other's center.
+ *
+ * A request is one line: a command letter and its parameters, as in the console game:
+ *   u <name>, p <name>, i, s <low> <high>, d <low> <high>, c <#>, b <#> [<sources>], a <name>|<name>,
+ *   q (closes the connection)
+ * A response is "OK" followed by one line per result, or "ERR <reason>", and always ends with a line holding
+ * only "." (result lines starting with "." get a second one, to be stripped by the client). Each query runs on
+ * its own task and hands its lines over as it finds them; the connection writes them as they arrive and flushes
+ * whenever it has caught up, so long results start reaching the client before the query ends. A query that
+ * fails after its first line can no longer answer ERR, so its connection is closed instead.
+ *
+ * Identical queries that arrive while one is running follow its output instead of running again.
+ * @author William Toth and Christopher Long
+ */
+
+public class GameServer implements Runnable, Closeable {
+    private final Game game;
+    private final ServerSocket listener;
+    private final ExecutorService connections; //runs one task per connection
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet(); //open connections, closed with the server
+    private final ConcurrentHashMap<String, Broadcast> running = new ConcurrentHashMap<>(); //query -> its output so far
+
+    public static final int DEFAULT_PORT = 4567;
+
+    /**
+     * Binds a server to a port on the loopback address; run() starts accepting connections
+     * @param game
+     * @param port 0 for any free port
+     * @throws IOException if the port can't be bound
+     */
+    public GameServer(Game game, int port) throws IOException {
+        this.game = game;
+        listener = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        connections = threadPerTaskExecutor();
+    }
+
+    /**
+     * Port the server is bound to
+     * @return
+     */
+    public int port() {
+        return listener.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed
+     */
+    public void run() {
+        while (!listener.isClosed()) {
+            try {
+                Socket client = listener.accept();
+                clients.add(client);
+                connections.execute(() -> serve(client));
+            }
+            catch (SocketException e) { //closed while waiting
+                if (!listener.isClosed()) System.err.println(e.getMessage());
+            }
+            catch (IOException | RejectedExecutionException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones
+     */
+    public void close() throws IOException {
+        listener.close();
+        for (Socket client : clients) client.close();
+        connections.shutdownNow();
+    }
+
+    /**
+     * A virtual thread per task where the runtime has them (Java 21 and later), otherwise a platform thread per task
+     * @return
+     */
+    static ExecutorService threadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "game-client");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Answers one client's requests until it sends q or hangs up
+     * @param client
+     */
+    private void serve(Socket client) {
+        try (Socket socket = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            int center = game.center();
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.equals("q")) break;
+                center = respond(line, center, out);
+                out.write(".\n");
+                out.flush();
+            }
+        }
+        catch (IOException e) {
+            //the client hung up or the server is closing; either way there is no one to answer
+        }
+        finally {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Writes the response to one request
+     * @param request
+     * @param center this connection's center of the universe
+     * @param out
+     * @return the connection's center after the request
+     * @throws IOException if the client hung up, or the query failed after its first line was written
+     */
+    private int respond(String request, int center, Writer out) throws IOException {
+        String[] words = request.split("\\s+", 2);
+        String command = words[0], parameters = words.length > 1 ? words[1].trim() : "";
+        Broadcast result;
+        int next = center;
+        try {
+            switch (command) {
+                case "u": {
+                    int person = actor(parameters);
+                    result = shared("u " + person, lines -> lines.accept(game.centerSummary(person)));
+                    next = person;
+                    break;
+                }
+                case "p": {
+                    int person = actor(parameters), to = center;
+                    result = shared("p " + person + " " + to, lines -> {
+                        List<String> links = game.pathToCenter(person, to);
+                        if (links == null) {
+                            lines.accept(parameters + "'s number is infinity.");
+                            return;
+                        }
+                        lines.accept(parameters + "'s number is " + links.size());
+                        links.forEach(lines);
+                    });
+                    break;
+                }
+                case "i": {
+                    int from = center;
+                    result = shared("i " + from, lines -> game.infiniteSeparation(from, lines));
+                    break;
+                }
+                case "s": {
+                    int[] range = integers(parameters, 2);
+                    int from = center;
+                    result = shared("s " + from + " " + range[0] + " " + range[1], lines -> game.separationRange(from, range[0], range[1], lines));
+                    break;
+                }
+                case "d": {
+                    int[] range = integers(parameters, 2);
+                    if (range[1] < range[0]) throw new IllegalArgumentException("High must be greater than low.");
+                    result = shared("d " + range[0] + " " + range[1], lines -> game.degreeRange(range[0], range[1], lines));
+                    break;
+                }
+                case "c": {
+                    int num = integers(parameters, 1)[0];
+                    result = shared("c " + num, lines -> game.centers(num, lines));
+                    break;
+                }
+                case "a": { //names never hold '|', the data files' delimiter
+                    String[] names = parameters.split("\\|", -1);
+                    if (names.length != 2) throw new IllegalArgumentException("Expected two names separated by |");
+                    String firstName = names[0].trim(), secondName = names[1].trim();
+                    int first = actor(firstName), second = actor(secondName);
+                    result = shared("a " + first + " " + second, lines -> {
+                        int separation = game.separation(first, second);
+                        lines.accept(firstName + " and " + secondName + " are separated by " +
+                                (separation < 0 ? "infinity" : String.valueOf(separation)) + ".");
+                    });
+                    break;
+                }
+                case "b": {
+                    int[] values = integers(parameters, parameters.split("\\s+").length == 2 ? 2 : 1);
+                    int num = values[0], samples = values.length > 1 ? values[1] : 0;
+                    result = shared("b " + num + " " + samples, lines -> game.bridges(num, samples, lines));
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + command);
+            }
+        }
+        catch (IllegalArgumentException e) {
+            error(e, out);
+            return center;
+        }
+        return write(result, out) ? next : center;
+    }
+
+    /**
+     * Writes a query's lines as it produces them, flushing whenever the query is behind the client
+     * @param result
+     * @param out
+     * @return whether the query succeeded
+     * @throws IOException if the client hung up, or the query failed after its first line was written
+     */
+    private static boolean write(Broadcast result, Writer out) throws IOException {
+        boolean started = false;
+        try {
+            for (int i = 0; ; i++) {
+                if (started && !result.ready(i)) out.flush(); //send what the client has so far while the query works
+                String line = result.line(i);
+                if (line == null) break;
+                if (!started) out.write("OK\n");
+                started = true;
+                if (line.startsWith(".")) out.write('.');
+                out.write(line);
+                out.write('\n');
+            }
+        }
+        catch (InterruptedException e) { //the server is closing
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Server closed");
+        }
+        Throwable failure = result.failure();
+        if (failure == null) {
+            if (!started) out.write("OK\n");
+            return true;
+        }
+        if (started) throw new IOException("Query failed after its first line", failure);
+        error(failure, out);
+        return false;
+    }
+
+    private static void error(Throwable failure, Writer out) throws IOException {
+        out.write("ERR " + String.valueOf(failure.getMessage()).replace('\n', ' ') + "\n");
+    }
+
+    /**
+     * Starts a query on its own task, or if the same query is already running, follows its output instead
+     * @param key the command and every value it depends on
+     * @param query hands its lines to the consumer it is given
+     * @return the query's output, filled in as it runs
+     */
+    private Broadcast shared(String key, Consumer<Consumer<String>> query) {
+        Broadcast mine = new Broadcast();
+        Broadcast theirs = running.putIfAbsent(key, mine);
+        if (theirs != null) return theirs;
+        try {
+            connections.execute(() -> {
+                Throwable failure = null;
+                try {
+                    query.accept(mine::add);
+                }
+                catch (Throwable e) {
+                    failure = e;
+                }
+                finally {
+                    running.remove(key, mine); //later requests see any changes made to the universe since
+                    mine.finish(failure); //every follower is released, whatever the query threw
+                }
+                if (failure instanceof Error) throw (Error) failure;
+            });
+        }
+        catch (RejectedExecutionException e) { //the server is closing
+            running.remove(key, mine);
+            mine.finish(e);
+        }
+        return mine;
+    }
+
+    /**
+     * The lines of one running query, kept so that every connection following it can replay them from the start
+     */
+    private static class Broadcast {
+        private final List<String> lines = new ArrayList<>();
+        private boolean finished;
+        private Throwable failure;
+
+        synchronized void add(String line) {
+            lines.add(line);
+            notifyAll();
+        }
+
+        synchronized void finish(Throwable failure) {
+            this.failure = failure;
+            finished = true;
+            notifyAll();
+        }
+
+        /**
+         * Whether line i, or the end of the output, can be read without waiting
+         * @param i
+         * @return
+         */
+        synchronized boolean ready(int i) {
+            return i < lines.size() || finished;
+        }
+
+        /**
+         * Line i of the output, waiting for the query to produce it
+         * @param i
+         * @return the line, or null if the query finished before producing it
+         * @throws InterruptedException
+         */
+        synchronized String line(int i) throws InterruptedException {
+            while (i >= lines.size() && !finished) wait();
+            return i < lines.size() ? lines.get(i) : null;
+        }
+
+        synchronized Throwable failure() {
+            return failure;
+        }
+    }
+
+    private int actor(String name) {
+        int id = game.actorId(name);
+        if (id < 0) throw new IllegalArgumentException(name + " is not in the universe");
+        return id;
+    }
+
+    private static int[] integers(String parameters, int count) {
+        String[] words = parameters.isEmpty() ? new String[0] : parameters.split("\\s+");
+        if (words.length != count) throw new IllegalArgumentException("Expected " + count + " integer(s)");
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            try {
+                values[i] = Integer.parseInt(words[i]);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not an integer: " + words[i]);
+            }
+        }
+        return values;
+    }
+}
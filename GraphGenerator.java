@@ -0,0 +1,164 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic scale-free graphs for measuring the library beyond the size of the movie data.
+ * Both generators give undirected graphs without self loops or repeated edges, over vertices 0..n-1,
+ * with no edge labels.
+ * @author William Toth and Christopher Long
+ */
+
+public class GraphGenerator {
+    private GraphGenerator() {
+    }
+
+    /**
+     * Recursive matrix (R-MAT) graph: each edge picks its endpoints by descending scale levels of the adjacency
+     * matrix, choosing the top-left, top-right, bottom-left or bottom-right quadrant with probabilities a, b, c
+     * and 1 - a - b - c. Skewed probabilities give power-law degrees and community structure.
+     * @param scale log2 of the number of vertices
+     * @param edgeFactor edges drawn per vertex, before repeats and self loops are dropped
+     * @param a
+     * @param b
+     * @param c
+     * @param seed
+     * @return
+     */
+    public static CompactGraph<Integer, Object> rmat(int scale, int edgeFactor, double a, double b, double c, long seed) {
+        if (scale < 1 || scale > 30) throw new IllegalArgumentException("Scale must be in [1, 30]: " + scale);
+        if (a < 0 || b < 0 || c < 0 || a + b + c > 1) throw new IllegalArgumentException("Quadrant probabilities must sum to at most 1");
+        int n = 1 << scale;
+        long draws = (long) n * edgeFactor;
+        if (draws > Integer.MAX_VALUE / 2) throw new IllegalArgumentException("Too many edges: " + draws);
+        int[] sources = new int[(int) draws], targets = new int[(int) draws];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int e = 0; e < draws; e++) {
+            int u = 0, v = 0;
+            for (int bit = scale - 1; bit >= 0; bit--) {
+                double r = random.nextDouble();
+                if (r >= a + b + c) { //bottom right
+                    u |= 1 << bit;
+                    v |= 1 << bit;
+                }
+                else if (r >= a + b) u |= 1 << bit; //bottom left
+                else if (r >= a) v |= 1 << bit; //top right
+            }
+            sources[e] = u;
+            targets[e] = v;
+        }
+        //vertex ids are scrambled so that high degree vertices aren't all at the low ids
+        int[] permutation = permutation(n, random);
+        for (int e = 0; e < draws; e++) {
+            sources[e] = permutation[sources[e]];
+            targets[e] = permutation[targets[e]];
+        }
+        return undirected(n, sources, targets, (int) draws);
+    }
+
+    /**
+     * R-MAT graph with the Graph500 quadrant probabilities (0.57, 0.19, 0.19, 0.05)
+     * @param scale log2 of the number of vertices
+     * @param edgeFactor
+     * @param seed
+     * @return
+     */
+    public static CompactGraph<Integer, Object> rmat(int scale, int edgeFactor, long seed) {
+        return rmat(scale, edgeFactor, 0.57, 0.19, 0.19, seed);
+    }
+
+    /**
+     * Barabasi-Albert preferential attachment graph: starting from a clique of m + 1 vertices, each new vertex
+     * joins m distinct existing vertices chosen with probability proportional to their degree
+     * @param n number of vertices
+     * @param m edges added with each vertex
+     * @param seed
+     * @return
+     */
+    public static CompactGraph<Integer, Object> barabasiAlbert(int n, int m, long seed) {
+        if (m < 1 || n <= m) throw new IllegalArgumentException("Need n > m >= 1: n = " + n + ", m = " + m);
+        long edges = (long) m * (m + 1) / 2 + (long) (n - m - 1) * m;
+        if (edges > Integer.MAX_VALUE / 2) throw new IllegalArgumentException("Too many edges: " + edges);
+        int[] sources = new int[(int) edges], targets = new int[(int) edges];
+        //every edge endpoint goes in ends, so a uniform pick from ends is a pick proportional to degree
+        int[] ends = new int[(int) edges * 2];
+        int count = 0;
+        for (int u = 0; u <= m; u++) {
+            for (int v = 0; v < u; v++) {
+                sources[count] = u;
+                targets[count] = v;
+                ends[2 * count] = u;
+                ends[2 * count + 1] = v;
+                count++;
+            }
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] chosen = new int[m];
+        for (int u = m + 1; u < n; u++) {
+            int picked = 0, available = 2 * count;
+            while (picked < m) {
+                int v = ends[random.nextInt(available)];
+                boolean repeat = false;
+                for (int i = 0; i < picked && !repeat; i++) repeat = chosen[i] == v;
+                if (!repeat) chosen[picked++] = v;
+            }
+            for (int i = 0; i < m; i++) {
+                sources[count] = u;
+                targets[count] = chosen[i];
+                ends[2 * count] = u;
+                ends[2 * count + 1] = chosen[i];
+                count++;
+            }
+        }
+        return undirected(n, sources, targets, count);
+    }
+
+    private static int[] permutation(int n, SplittableRandom random) {
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) permutation[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = t;
+        }
+        return permutation;
+    }
+
+    /**
+     * Builds an undirected graph from a list of edges, adding each in both directions and dropping self loops
+     * and repeats
+     * @param n
+     * @param sources
+     * @param targets
+     * @param edges number of entries of sources and targets in use
+     * @return
+     */
+    private static CompactGraph<Integer, Object> undirected(int n, int[] sources, int[] targets, int edges) {
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < edges; e++) {
+            if (sources[e] == targets[e]) continue;
+            offsets[sources[e] + 1]++;
+            offsets[targets[e] + 1]++;
+        }
+        for (int u = 0; u < n; u++) offsets[u + 1] += offsets[u];
+        int[] rows = new int[offsets[n]];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < edges; e++) {
+            if (sources[e] == targets[e]) continue;
+            rows[next[sources[e]]++] = targets[e];
+            rows[next[targets[e]]++] = sources[e];
+        }
+        //sort each row and squeeze out repeats, compacting the rows toward the front
+        int size = 0;
+        for (int u = 0; u < n; u++) {
+            int start = offsets[u], end = offsets[u + 1];
+            Arrays.sort(rows, start, end);
+            offsets[u] = size;
+            for (int i = start; i < end; i++) if (i == start || rows[i] != rows[i - 1]) rows[size++] = rows[i];
+        }
+        offsets[n] = size;
+        SymbolTable<Integer> dictionary = new SymbolTable<>();
+        for (int v = 0; v < n; v++) dictionary.intern(v);
+        return CompactGraph.fromRows(dictionary, offsets, Arrays.copyOf(rows, size), new Object[size]);
+    }
+}
@@ -1,4 +1,14 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
 
 /**
  * Static methods class for Kevin Bacon Game
@@ -86,7 +96,8 @@ public class GraphLibrary {
     }
 
     /**
-     * Calculate the average separation between the tree graph root and all the other vertices in the graph
+     * Calculate the average separation between the tree graph root and all the other vertices in the graph.
+     * Walks the tree a level at a time rather than recursing, so deep trees can't overflow the stack.
      * @param tree
      * @param root
      * @param <V>
@@ -94,47 +105,1620 @@ public class GraphLibrary {
      * @return
      */
     public static <V,E> double averageSeparation(Graph<V,E> tree, V root) {
-        //create a list to hold the path lengths for each vertice besides the root
-        List<Integer> pathLengths = new ArrayList<>();
-        //call helper to start recursion and fill pathLengths list
-        sepHelper(tree, pathLengths, root, 1);
+        //children point at their parents, so a vertex's children are its in neighbors
+        List<V> level = new ArrayList<>();
+        List<V> next = new ArrayList<>();
+        level.add(root);
+        long sum = 0, count = 0;
+        for (int d = 1; !level.isEmpty(); d++) {
+            for (V parent : level) {
+                for (V child : tree.inNeighbors(parent)) next.add(child);
+            }
+            sum += (long) d * next.size();
+            count += next.size();
+            List<V> done = level;
+            level = next;
+            next = done;
+            next.clear();
+        }
         //if there are no paths from root, return 0
-        if (pathLengths.isEmpty()) return 0;
-        double sum = 0;
-        //loop through every path and add the values to get a sum of lengths
-        for (Integer length : pathLengths) {
-            sum += length;
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Runs Breadth First Search on an indexed graph using vertex ids
+     * @param g
+     * @param source id of the start vertex
+     * @param <V>
+     * @param <E>
+     * @return
+     */
+    public static <V,E> ShortestPathTree bfs(IndexedGraph<V,E> g, int source) {
+        return bfs(g, source, TraversalMode.TOP_DOWN);
+    }
+
+    /**
+     * Runs Breadth First Search on an indexed graph using vertex ids and the given traversal mode.
+     * Bipartite graphs always search top-down, alternating actor and movie layers; mapped graphs pick, level by
+     * level, between top-down and a sequential scan of their cast file.
+     * @param g
+     * @param source id of the start vertex
+     * @param mode
+     * @param <V>
+     * @param <E>
+     * @return
+     */
+    public static <V,E> ShortestPathTree bfs(IndexedGraph<V,E> g, int source, TraversalMode mode) {
+        long start = Metrics.start();
+        ShortestPathTree tree = new ShortestPathTree(g.numVertices(), source);
+        if (g instanceof BipartiteGraph) bipartiteBfs((BipartiteGraph<?>) g, tree);
+        else if (g instanceof MappedGraph) mappedBfs((MappedGraph<?>) g, tree);
+        else if (!(g instanceof CompactGraph)) adjacencyBfs(g, tree);
+        else if (mode == TraversalMode.DIRECTION_OPTIMIZING) directionOptimizingBfs((CompactGraph<?,?>) g, tree);
+        else topDownBfs((CompactGraph<?,?>) g, tree);
+        tree.indexLevels();
+        if (start != 0) {
+            long elapsed = System.nanoTime() - start, edges = 0;
+            for (int i = 0; i < tree.reachCount(); i++) edges += g.outDegreeAt(tree.reachedVertex(i));
+            Metrics.traversal("bfs", elapsed, tree.reachCount(), edges);
         }
-        //divide by size of list
-        return sum / pathLengths.size();
+        return tree;
     }
 
     /**
-     * Called by averageSeparation to help recurse through tree
+     * Queue-driven BFS over CSR arrays
+     * @param g
+     * @param tree tree holding only its root
+     */
+    private static void topDownBfs(CompactGraph<?,?> g, ShortestPathTree tree) {
+        //the tree's discovery order doubles as the queue: vertices before head have been expanded
+        for (int head = 0; head < tree.reachCount(); head++) {
+            int u = tree.reachedVertex(head);
+            for (int e = g.outOffsets[u]; e < g.outOffsets[u + 1]; e++) {
+                int v = g.outTargets[e];
+                if (!tree.isReachable(v)) tree.discover(u, v); //not yet discovered, so it is discovered from u
+            }
+        }
+    }
+
+    /**
+     * Queue-driven BFS over an actor-movie graph: each movie is expanded once, by the first actor to reach
+     * it, and every undiscovered cast member is one actor hop further from the root
+     * @param g
+     * @param tree tree holding only its root
+     */
+    private static void bipartiteBfs(BipartiteGraph<?> g, ShortestPathTree tree) {
+        boolean[] movieSeen = new boolean[g.numMovies()];
+        for (int head = 0; head < tree.reachCount(); head++) {
+            int u = tree.reachedVertex(head);
+            for (int f = g.filmOffsets[u]; f < g.filmOffsets[u + 1]; f++) {
+                int m = g.films[f];
+                if (movieSeen[m]) continue;
+                movieSeen[m] = true;
+                for (int i = g.castOffsets[m]; i < g.castOffsets[m + 1]; i++) {
+                    int v = g.castMembers[i];
+                    if (!tree.isReachable(v)) tree.discover(u, v);
+                }
+            }
+        }
+    }
+
+    /**
+     * Level-synchronous BFS over an actor-movie graph kept in a mapped file. While the frontier's films are few
+     * next to the credits of unexpanded movies, a level is expanded top-down, reading only the rows its actors
+     * lead to. Past that, one pass over the cast lists in file order finds the whole level instead: each
+     * unexpanded movie with a cast member in the frontier is expanded from that member. The scan reads the file
+     * sequentially rather than seeking, so pages come in by read-ahead when the file doesn't fit in memory.
+     * Only per-vertex state is kept: the tree, a frontier bitmap and the expanded movies.
+     * @param g
+     * @param tree tree holding only its root, filled in level by level
+     */
+    private static void mappedBfs(MappedGraph<?> g, ShortestPathTree tree) {
+        int numMovies = g.numMovies();
+        boolean[] movieSeen = new boolean[numMovies];
+        long[] frontier = new long[(g.numVertices() + 63) >>> 6];
+        long unexplored = g.numCredits(); //credits of movies not yet expanded
+        for (int levelStart = 0, levelEnd = tree.reachCount(); levelStart < levelEnd; levelStart = levelEnd, levelEnd = tree.reachCount()) {
+            long frontierFilms = 0;
+            for (int i = levelStart; i < levelEnd; i++) {
+                int u = tree.reachedVertex(i);
+                frontierFilms += g.filmEnd(u) - g.filmStart(u);
+            }
+            if (frontierFilms * TOP_DOWN_ALPHA < unexplored) {
+                for (int i = levelStart; i < levelEnd; i++) {
+                    int u = tree.reachedVertex(i);
+                    for (long f = g.filmStart(u); f < g.filmEnd(u); f++) {
+                        int m = g.film(f);
+                        if (movieSeen[m]) continue;
+                        movieSeen[m] = true;
+                        unexplored -= g.castEnd(m) - g.castStart(m);
+                        for (long c = g.castStart(m); c < g.castEnd(m); c++) {
+                            int v = g.castMember(c);
+                            if (!tree.isReachable(v)) tree.discover(u, v);
+                        }
+                    }
+                }
+                continue;
+            }
+            for (int i = levelStart; i < levelEnd; i++) {
+                int u = tree.reachedVertex(i);
+                frontier[u >>> 6] |= 1L << u;
+            }
+            for (int m = 0; m < numMovies; m++) {
+                if (movieSeen[m]) continue;
+                long start = g.castStart(m), end = g.castEnd(m);
+                int parent = -1;
+                for (long c = start; c < end && parent < 0; c++) {
+                    int v = g.castMember(c);
+                    if ((frontier[v >>> 6] & 1L << v) != 0) parent = v;
+                }
+                if (parent < 0) continue;
+                movieSeen[m] = true;
+                unexplored -= end - start;
+                for (long c = start; c < end; c++) {
+                    int v = g.castMember(c);
+                    if (!tree.isReachable(v)) tree.discover(parent, v);
+                }
+            }
+            for (int i = levelStart; i < levelEnd; i++) frontier[tree.reachedVertex(i) >>> 6] = 0;
+        }
+    }
+
+    /**
+     * Queue-driven BFS through the Graph interface, for indexed graphs without a specialized search
+     * @param g
+     * @param tree tree holding only its root
+     */
+    private static <V,E> void adjacencyBfs(IndexedGraph<V,E> g, ShortestPathTree tree) {
+        for (int head = 0; head < tree.reachCount(); head++) {
+            int u = tree.reachedVertex(head);
+            for (V w : g.outNeighbors(g.vertexAt(u))) {
+                int v = g.indexOf(w);
+                if (!tree.isReachable(v)) tree.discover(u, v);
+            }
+        }
+    }
+
+    private static final int TOP_DOWN_ALPHA = 14; //go bottom-up once frontier edges exceed unexplored edges / alpha
+    private static final int BOTTOM_UP_BETA = 24; //go back top-down once the frontier is under n / beta vertices
+
+    /**
+     * Level-synchronous BFS that picks top-down or bottom-up for each level (Beamer et al.)
+     * @param g
+     * @param tree tree holding only its root, filled in level by level
+     */
+    private static void directionOptimizingBfs(CompactGraph<?,?> g, ShortestPathTree tree) {
+        int n = g.numVertices();
+        long[] frontier = new long[(n + 63) >>> 6]; //bitset of the current level, used by bottom-up steps
+        long unexploredEdges = g.numEdges(); //out edges of vertices not yet discovered
+        int source = tree.source();
+        unexploredEdges -= g.outDegreeAt(source);
+        boolean bottomUp = false;
+        int levelStart = 0, levelEnd = tree.reachCount();
+        while (levelStart < levelEnd) {
+            long frontierEdges = 0;
+            for (int i = levelStart; i < levelEnd; i++) frontierEdges += g.outDegreeAt(tree.reachedVertex(i));
+            int frontierSize = levelEnd - levelStart;
+            if (!bottomUp && frontierEdges > unexploredEdges / TOP_DOWN_ALPHA) bottomUp = true;
+            else if (bottomUp && frontierSize < n / BOTTOM_UP_BETA) bottomUp = false;
+
+            if (bottomUp) {
+                Arrays.fill(frontier, 0);
+                for (int i = levelStart; i < levelEnd; i++) {
+                    int u = tree.reachedVertex(i);
+                    frontier[u >>> 6] |= 1L << u;
+                }
+                //every undiscovered vertex looks for any parent on the current level
+                for (int v = 0; v < n; v++) {
+                    if (tree.isReachable(v)) continue;
+                    for (int e = g.inOffsets[v]; e < g.inOffsets[v + 1]; e++) {
+                        int u = g.inSources[e];
+                        if ((frontier[u >>> 6] & (1L << u)) != 0) {
+                            tree.discover(u, v);
+                            unexploredEdges -= g.outDegreeAt(v);
+                            break;
+                        }
+                    }
+                }
+            }
+            else {
+                for (int i = levelStart; i < levelEnd; i++) {
+                    int u = tree.reachedVertex(i);
+                    for (int e = g.outOffsets[u]; e < g.outOffsets[u + 1]; e++) {
+                        int v = g.outTargets[e];
+                        if (!tree.isReachable(v)) {
+                            tree.discover(u, v);
+                            unexploredEdges -= g.outDegreeAt(v);
+                        }
+                    }
+                }
+            }
+            levelStart = levelEnd;
+            levelEnd = tree.reachCount();
+        }
+    }
+
+    /**
+     * Finds a shortest path between two vertices by searching forward from the start and backward from the
+     * end at the same time, always expanding whichever frontier is smaller, and stopping on the first level
+     * where the two searches meet
+     * @param g
+     * @param from id of the start vertex
+     * @param to id of the end vertex
+     * @param <V>
+     * @param <E>
+     * @return the path with its edge labels, or null if to can't be reached from from
+     */
+    public static <V,E> LabeledPath<E> bidirectionalPath(IndexedGraph<V,E> g, int from, int to) {
+        long start = Metrics.start();
+        LabeledPath<E> path = g instanceof CompactGraph ? csrBidirectionalPath((CompactGraph<V,E>) g, from, to) : treePath(g, from, to);
+        Metrics.stop("bidirectionalPath", start);
+        return path;
+    }
+
+    /**
+     * Bidirectional search over CSR arrays
+     * @param g
+     * @param from
+     * @param to
+     * @param <V>
+     * @param <E>
+     * @return
+     */
+    private static <V,E> LabeledPath<E> csrBidirectionalPath(CompactGraph<V,E> g, int from, int to) {
+        int n = g.numVertices();
+        int[] forwardParent = new int[n], backwardParent = new int[n]; //-1 where not yet discovered by that side
+        int[] forwardDistance = new int[n], backwardDistance = new int[n];
+        Arrays.fill(forwardParent, -1);
+        Arrays.fill(backwardParent, -1);
+        forwardParent[from] = from;
+        backwardParent[to] = to;
+        int[] forwardFrontier = {from}, backwardFrontier = {to};
+        int forwardSize = 1, backwardSize = 1;
+        int meetFrom = -1, meetTo = -1, best = Integer.MAX_VALUE; //best edge joining the two searches so far
+        if (from == to) best = 0;
+
+        while (best == Integer.MAX_VALUE && forwardSize > 0 && backwardSize > 0) {
+            boolean forward = forwardSize <= backwardSize;
+            int[] frontier = forward ? forwardFrontier : backwardFrontier;
+            int size = forward ? forwardSize : backwardSize;
+            int[] offsets = forward ? g.outOffsets : g.inOffsets, neighbors = forward ? g.outTargets : g.inSources;
+            int[] parent = forward ? forwardParent : backwardParent, distance = forward ? forwardDistance : backwardDistance;
+            int[] otherParent = forward ? backwardParent : forwardParent, otherDistance = forward ? backwardDistance : forwardDistance;
+            int[] nextFrontier = new int[16];
+            int nextSize = 0;
+            for (int i = 0; i < size; i++) {
+                int u = frontier[i];
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    int v = neighbors[e];
+                    if (otherParent[v] != -1 && distance[u] + 1 + otherDistance[v] < best) { //the searches meet on edge u-v
+                        best = distance[u] + 1 + otherDistance[v];
+                        meetFrom = forward ? u : v;
+                        meetTo = forward ? v : u;
+                    }
+                    if (parent[v] == -1) {
+                        parent[v] = u;
+                        distance[v] = distance[u] + 1;
+                        if (nextSize == nextFrontier.length) nextFrontier = Arrays.copyOf(nextFrontier, nextSize * 2);
+                        nextFrontier[nextSize++] = v;
+                    }
+                }
+            }
+            if (forward) {
+                forwardFrontier = nextFrontier;
+                forwardSize = nextSize;
+            }
+            else {
+                backwardFrontier = nextFrontier;
+                backwardSize = nextSize;
+            }
+        }
+        if (best == Integer.MAX_VALUE) return null;
+
+        //stitch the forward half (walked back to the start) onto the backward half (walked on to the end)
+        int[] path = new int[best + 1];
+        if (best == 0) path[0] = from;
+        else {
+            int i = forwardDistance[meetFrom];
+            for (int current = meetFrom; i >= 0; i--, current = forwardParent[current]) path[i] = current;
+            i = forwardDistance[meetFrom] + 1;
+            for (int current = meetTo; i <= best; i++, current = backwardParent[current]) path[i] = current;
+        }
+        List<E> labels = new ArrayList<>(best);
+        for (int i = 0; i < best; i++) labels.add(g.labelAt(g.findEdge(path[i], path[i + 1])));
+        return new LabeledPath<E>(path, labels);
+    }
+
+    /**
+     * Shortest path from a single-source search, for graphs without CSR in-edges to search backward over
+     * @param g
+     * @param from
+     * @param to
+     * @param <V>
+     * @param <E>
+     * @return
+     */
+    private static <V,E> LabeledPath<E> treePath(IndexedGraph<V,E> g, int from, int to) {
+        ShortestPathTree tree = bfs(g, from);
+        if (!tree.isReachable(to)) return null;
+        int[] path = tree.path(to);
+        List<E> labels = new ArrayList<>(path.length - 1);
+        for (int i = 0; i + 1 < path.length; i++) labels.add(g.labelBetween(path[i], path[i + 1]));
+        return new LabeledPath<E>(path, labels);
+    }
+
+    /**
+     * Find vertices that were not reached by a traversal
      * @param tree
-     * @param paths
-     * @param root
-     * @param level
+     * @return ids of unreachable vertices in increasing order
+     */
+    public static int[] missingVertices(ShortestPathTree tree) {
+        int[] missing = new int[tree.numVertices() - tree.reachCount()];
+        for (int v = 0, i = 0; v < tree.numVertices(); v++) if (!tree.isReachable(v)) missing[i++] = v;
+        return missing;
+    }
+
+    /**
+     * Calculate the average separation between the root of a tree and every vertex it reaches
+     * @param tree
+     * @return
+     */
+    public static double averageSeparation(ShortestPathTree tree) {
+        //if there are no paths from root, return 0
+        if (tree.reachCount() <= 1) return 0;
+        long sum = 0;
+        for (int d = 1; d < tree.levels(); d++) sum += (long) d * tree.levelSize(d);
+        return (double) sum / (tree.reachCount() - 1);
+    }
+
+    /**
+     * Counts the vertices at each distance from a source without building a tree: one level-synchronous pass
+     * that keeps only a visited stamp and a queue per vertex, for callers that need reach and separation but
+     * not paths
+     * @param g
+     * @param source id of the start vertex
+     * @param <V>
+     * @param <E>
+     * @return
+     */
+    public static <V,E> SeparationStats separationStats(IndexedGraph<V,E> g, int source) {
+        int n = g.numVertices();
+        int[] stamp = new int[n], queue = new int[n];
+        int[] movieStamp = new int[movieCount(g)];
+        int[] levelSizes = new int[16];
+        int levels = 1;
+        levelSizes[0] = 1;
+        stamp[source] = 1;
+        queue[0] = source;
+        long start = Metrics.start();
+        int reached = 1;
+        for (int head = 0, tail = 1; head < tail; ) {
+            int levelEnd = tail;
+            tail = expandLevel(g, queue, head, levelEnd, tail, stamp, movieStamp, 1);
+            head = levelEnd;
+            reached = tail;
+            if (tail == levelEnd) break;
+            if (levels == levelSizes.length) levelSizes = Arrays.copyOf(levelSizes, levels * 2);
+            levelSizes[levels++] = tail - levelEnd;
+        }
+        if (start != 0) {
+            long elapsed = System.nanoTime() - start, edges = 0;
+            for (int i = 0; i < reached; i++) edges += g.outDegreeAt(queue[i]);
+            Metrics.traversal("separationStats", elapsed, reached, edges);
+        }
+        return new SeparationStats(source, Arrays.copyOf(levelSizes, levels));
+    }
+
+    /**
+     * Stamps the unstamped neighbors of the vertices in queue[head .. levelEnd) and appends them to the queue
+     * @param g
+     * @param queue
+     * @param head start of the level being expanded
+     * @param levelEnd end of the level being expanded
+     * @param tail end of the queue
+     * @param stamp vertices stamped with mark have been found
+     * @param movieStamp movies stamped with mark have been expanded (actor-movie graphs only)
+     * @param mark
+     * @param <V>
+     * @param <E>
+     * @return the new end of the queue
+     */
+    private static <V,E> int expandLevel(IndexedGraph<V,E> g, int[] queue, int head, int levelEnd, int tail,
+                                         int[] stamp, int[] movieStamp, int mark) {
+        if (g instanceof CompactGraph) {
+            CompactGraph<?,?> compact = (CompactGraph<?,?>) g;
+            for (; head < levelEnd; head++) {
+                int u = queue[head];
+                for (int e = compact.outOffsets[u]; e < compact.outOffsets[u + 1]; e++) {
+                    int v = compact.outTargets[e];
+                    if (stamp[v] != mark) {
+                        stamp[v] = mark;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+        }
+        else if (g instanceof BipartiteGraph) {
+            BipartiteGraph<?> bipartite = (BipartiteGraph<?>) g;
+            for (; head < levelEnd; head++) {
+                int u = queue[head];
+                for (int f = bipartite.filmOffsets[u]; f < bipartite.filmOffsets[u + 1]; f++) {
+                    int m = bipartite.films[f];
+                    if (movieStamp[m] == mark) continue;
+                    movieStamp[m] = mark;
+                    for (int i = bipartite.castOffsets[m]; i < bipartite.castOffsets[m + 1]; i++) {
+                        int v = bipartite.castMembers[i];
+                        if (stamp[v] != mark) {
+                            stamp[v] = mark;
+                            queue[tail++] = v;
+                        }
+                    }
+                }
+            }
+        }
+        else if (g instanceof MappedGraph) {
+            MappedGraph<?> mapped = (MappedGraph<?>) g;
+            for (; head < levelEnd; head++) {
+                int u = queue[head];
+                for (long f = mapped.filmStart(u); f < mapped.filmEnd(u); f++) {
+                    int m = mapped.film(f);
+                    if (movieStamp[m] == mark) continue;
+                    movieStamp[m] = mark;
+                    for (long i = mapped.castStart(m); i < mapped.castEnd(m); i++) {
+                        int v = mapped.castMember(i);
+                        if (stamp[v] != mark) {
+                            stamp[v] = mark;
+                            queue[tail++] = v;
+                        }
+                    }
+                }
+            }
+        }
+        else {
+            for (; head < levelEnd; head++) {
+                for (int v : neighborIds(g, queue[head])) {
+                    if (stamp[v] != mark) {
+                        stamp[v] = mark;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Brings a shortest path tree up to date after edges at some vertices of an undirected graph were inserted or
+     * removed, re-traversing only the part of the tree whose distances can change. A vertex whose tree edge was
+     * removed first looks for another parent one level up; only vertices that find none are detached, along with
+     * the tree children that then lose their parents. Distances are then lowered outward, in increasing order,
+     * from the surviving neighbors of the detached vertices and from the touched vertices (which picks up new edges).
+     * The level index is then rebuilt in one pass over the distances.
+     * @param g the graph after the change
+     * @param tree a tree built over g before the change; updated in place
+     * @param touched ids of every vertex with an inserted or removed edge
+     * @param <V>
+     * @param <E>
+     */
+    public static <V,E> void repairBfs(IndexedGraph<V,E> g, ShortestPathTree tree, int[] touched) {
+        long start = Metrics.start();
+        tree.grow(g.numVertices());
+        //vertices come out level by level
+        LevelQueue pending = new LevelQueue();
+        for (int v : touched) {
+            int p = tree.parent(v);
+            if (p >= 0 && p != v && g.labelBetween(p, v) == null) pending.add(v, tree.distance(v));
+        }
+        BitSet detached = new BitSet();
+        List<Integer> lost = new ArrayList<>();
+        for (int v = pending.poll(); v >= 0; v = pending.poll()) {
+            int d = pending.level();
+            if (detached.get(v)) continue;
+            int[] neighbors = neighborIds(g, v);
+            int parent = -1;
+            //every vertex one level up has already been settled, since levels are handled in order
+            for (int w : neighbors) {
+                if (!detached.get(w) && tree.distance(w) == d - 1) {
+                    parent = w;
+                    break;
+                }
+            }
+            if (parent >= 0) tree.setParent(v, parent);
+            else {
+                detached.set(v);
+                lost.add(v);
+                for (int w : neighbors) if (w != v && tree.parent(w) == v) pending.add(w, d + 1);
+            }
+        }
+        for (int v : lost) tree.detach(v);
+        for (int v : lost) {
+            for (int w : neighborIds(g, v)) if (tree.isReachable(w)) pending.add(w, tree.distance(w));
+        }
+        for (int v : touched) if (tree.isReachable(v)) pending.add(v, tree.distance(v));
+        for (int u = pending.poll(); u >= 0; u = pending.poll()) {
+            int d = pending.level();
+            if (tree.distance(u) != d) continue; //lowered again after this entry was queued
+            for (int v : neighborIds(g, u)) {
+                if (!tree.isReachable(v) || tree.distance(v) > d + 1) {
+                    tree.setParent(v, u);
+                    pending.add(v, d + 1);
+                }
+            }
+        }
+        tree.indexLevels();
+        Metrics.stop("repairBfs", start);
+    }
+
+    /**
+     * Vertices waiting in repairBfs, taken out level by level and in increasing id within a level. Each level
+     * has a bucket of ids, sorted once when its turn comes; nothing is queued below the level being taken out,
+     * so entries are never compared across levels.
+     */
+    private static class LevelQueue {
+        private int[][] buckets = new int[8][];
+        private int[] sizes = new int[8];
+        private int level, head; //the next vertex is buckets[level][head]
+        private boolean sorted; //whether the current level's bucket has been sorted
+
+        /**
+         * Queues a vertex at a level no lower than the last one taken out, unless the queue has run empty
+         * @param v
+         * @param d
+         */
+        void add(int v, int d) {
+            if (d >= buckets.length) {
+                int length = Math.max(d + 1, buckets.length * 2);
+                buckets = Arrays.copyOf(buckets, length);
+                sizes = Arrays.copyOf(sizes, length);
+            }
+            if (buckets[d] == null) buckets[d] = new int[16];
+            else if (sizes[d] == buckets[d].length) buckets[d] = Arrays.copyOf(buckets[d], sizes[d] * 2);
+            buckets[d][sizes[d]++] = v;
+            if (d < level) { //starting over after running empty
+                level = d;
+                head = 0;
+                sorted = false;
+            }
+        }
+
+        /**
+         * Takes out the vertex with the lowest level, lowest id first
+         * @return the vertex, or -1 if the queue is empty
+         */
+        int poll() {
+            while (level < sizes.length && head == sizes[level]) {
+                sizes[level++] = 0;
+                head = 0;
+                sorted = false;
+            }
+            if (level == sizes.length) return -1;
+            if (!sorted) {
+                Arrays.sort(buckets[level], head, sizes[level]);
+                sorted = true;
+            }
+            return buckets[level][head++];
+        }
+
+        /**
+         * Level of the vertex last taken out
+         * @return
+         */
+        int level() {
+            return level;
+        }
+    }
+
+    /**
+     * Ids of the out neighbors of a vertex
+     * @param g
+     * @param u
+     * @param <V>
+     * @param <E>
+     * @return
+     */
+    static <V,E> int[] neighborIds(IndexedGraph<V,E> g, int u) {
+        if (g instanceof CompactGraph) {
+            CompactGraph<?,?> compact = (CompactGraph<?,?>) g;
+            return Arrays.copyOfRange(compact.outTargets, compact.outOffsets[u], compact.outOffsets[u + 1]);
+        }
+        if (g instanceof BipartiteGraph) return ((BipartiteGraph<?>) g).coStars(u);
+        if (g instanceof MappedGraph) return ((MappedGraph<?>) g).coStars(u);
+        int[] ids = new int[g.outDegreeAt(u)];
+        int i = 0;
+        for (V w : g.outNeighbors(g.vertexAt(u))) ids[i++] = g.indexOf(w);
+        return ids;
+    }
+
+    /**
+     * Neighbor lists of a graph as CSR arrays: a CompactGraph's own, otherwise copied out of the graph one row
+     * at a time (for an actor-movie graph, this materializes its co-star edges)
+     * @param g
+     * @return offsets and targets; the neighbors of u are targets[offsets[u] .. offsets[u+1])
+     */
+    static int[][] neighborRows(IndexedGraph<?,?> g) {
+        if (g instanceof CompactGraph) return new int[][] {((CompactGraph<?,?>) g).outOffsets, ((CompactGraph<?,?>) g).outTargets};
+        int n = g.numVertices();
+        int[] offsets = new int[n + 1];
+        for (int u = 0; u < n; u++) offsets[u + 1] = offsets[u] + g.outDegreeAt(u);
+        int[] targets = new int[offsets[n]];
+        for (int u = 0; u < n; u++) System.arraycopy(neighborIds(g, u), 0, targets, offsets[u], offsets[u + 1] - offsets[u]);
+        return new int[][] {offsets, targets};
+    }
+
+    /**
+     * Number of movies of an actor-movie graph, or 0 for graphs without movies
+     * @param g
+     * @return
+     */
+    private static int movieCount(IndexedGraph<?,?> g) {
+        if (g instanceof BipartiteGraph) return ((BipartiteGraph<?>) g).numMovies();
+        if (g instanceof MappedGraph) return ((MappedGraph<?>) g).numMovies();
+        return 0;
+    }
+
+    /**
+     * Runs Breadth First Search from many sources at once. Sources are packed 64 to a batch, one bit per
+     * source, so a single scan of an adjacency row advances all 64 searches; batches run in parallel
+     * on the common fork-join pool. Graphs without a bit-parallel search run one bfs per source instead.
+     * @param g
+     * @param sources ids of the start vertices
+     * @param reach filled with the number of vertices each source reaches (not counting itself)
+     * @param distanceSums filled with the sum of distances from each source to the vertices it reaches
+     * @param <V>
+     * @param <E>
+     */
+    public static <V,E> void multiSourceBfs(IndexedGraph<V,E> g, int[] sources, int[] reach, long[] distanceSums) {
+        long start = Metrics.start();
+        int batches = (sources.length + 63) / 64;
+        ForkJoinPool.commonPool().invoke(new MultiSourceTask(g, sources, reach, distanceSums, 0, batches));
+        Metrics.stop("multiSourceBfs", start);
+    }
+
+    /**
+     * Splits a range of 64-source batches in half until one batch is left, then runs it
+     */
+    private static class MultiSourceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IndexedGraph<?,?> g;
+        private final int[] sources, reach;
+        private final long[] distanceSums;
+        private final int fromBatch, toBatch;
+
+        MultiSourceTask(IndexedGraph<?,?> g, int[] sources, int[] reach, long[] distanceSums, int fromBatch, int toBatch) {
+            this.g = g;
+            this.sources = sources;
+            this.reach = reach;
+            this.distanceSums = distanceSums;
+            this.fromBatch = fromBatch;
+            this.toBatch = toBatch;
+        }
+
+        protected void compute() {
+            if (toBatch - fromBatch > 1) {
+                int mid = (fromBatch + toBatch) >>> 1;
+                invokeAll(new MultiSourceTask(g, sources, reach, distanceSums, fromBatch, mid),
+                        new MultiSourceTask(g, sources, reach, distanceSums, mid, toBatch));
+            }
+            else if (toBatch > fromBatch) {
+                int first = fromBatch * 64, last = Math.min(first + 64, sources.length);
+                if (g instanceof CompactGraph) bitParallelBfs((CompactGraph<?,?>) g, sources, first, last, reach, distanceSums);
+                else if (g instanceof BipartiteGraph) bitParallelBfs((BipartiteGraph<?>) g, sources, first, last, reach, distanceSums);
+                else {
+                    for (int i = first; i < last; i++) {
+                        ShortestPathTree tree = bfs(g, sources[i]);
+                        reach[i] = tree.reachCount() - 1;
+                        distanceSums[i] = 0;
+                        for (int r = 1; r < tree.reachCount(); r++) distanceSums[i] += tree.distance(tree.reachedVertex(r));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs up to 64 searches together: bit i of a vertex's mask stands for sources[first + i]
+     * @param g
+     * @param sources
+     * @param first
+     * @param last
+     * @param reach
+     * @param distanceSums
+     */
+    private static void bitParallelBfs(CompactGraph<?,?> g, int[] sources, int first, int last, int[] reach, long[] distanceSums) {
+        int n = g.numVertices();
+        long[] seen = new long[n]; //searches that have discovered each vertex
+        long[] frontier = new long[n]; //searches for which each vertex is on the current level
+        long[] next = new long[n]; //searches for which each vertex is on the next level
+        for (int i = first; i < last; i++) {
+            long bit = 1L << (i - first);
+            seen[sources[i]] |= bit;
+            frontier[sources[i]] |= bit;
+            reach[i] = 0;
+            distanceSums[i] = 0;
+        }
+        boolean active = true;
+        for (int level = 1; active; level++) {
+            for (int u = 0; u < n; u++) {
+                long visit = frontier[u];
+                if (visit == 0) continue;
+                for (int e = g.outOffsets[u]; e < g.outOffsets[u + 1]; e++) {
+                    int v = g.outTargets[e];
+                    long discovered = visit & ~seen[v]; //searches reaching v for the first time
+                    if (discovered != 0) {
+                        next[v] |= discovered;
+                        seen[v] |= discovered;
+                    }
+                }
+            }
+            active = false;
+            for (int v = 0; v < n; v++) {
+                long discovered = next[v];
+                if (discovered == 0) continue;
+                active = true;
+                //credit this level to every search that discovered v
+                while (discovered != 0) {
+                    int i = first + Long.numberOfTrailingZeros(discovered);
+                    reach[i]++;
+                    distanceSums[i] += level;
+                    discovered &= discovered - 1;
+                }
+            }
+            long[] swap = frontier;
+            frontier = next;
+            next = swap;
+            Arrays.fill(next, 0);
+        }
+    }
+
+    /**
+     * Runs up to 64 searches together over an actor-movie graph. Each level moves the searches from actors
+     * to their movies and then on to the casts, so one level is one actor hop.
+     * @param g
+     * @param sources
+     * @param first
+     * @param last
+     * @param reach
+     * @param distanceSums
+     */
+    private static void bitParallelBfs(BipartiteGraph<?> g, int[] sources, int first, int last, int[] reach, long[] distanceSums) {
+        int n = g.numVertices();
+        long[] seen = new long[n], frontier = new long[n], next = new long[n];
+        long[] movieSeen = new long[g.numMovies()], movieFrontier = new long[g.numMovies()];
+        for (int i = first; i < last; i++) {
+            long bit = 1L << (i - first);
+            seen[sources[i]] |= bit;
+            frontier[sources[i]] |= bit;
+            reach[i] = 0;
+            distanceSums[i] = 0;
+        }
+        boolean active = true;
+        for (int level = 1; active; level++) {
+            //actors hand their searches to movies not yet expanded by those searches
+            Arrays.fill(movieFrontier, 0);
+            for (int u = 0; u < n; u++) {
+                long visit = frontier[u];
+                if (visit == 0) continue;
+                for (int f = g.filmOffsets[u]; f < g.filmOffsets[u + 1]; f++) {
+                    int m = g.films[f];
+                    long discovered = visit & ~movieSeen[m];
+                    movieFrontier[m] |= discovered;
+                    movieSeen[m] |= discovered;
+                }
+            }
+            //movies hand their searches to cast members not yet discovered by those searches
+            for (int m = 0; m < g.numMovies(); m++) {
+                long visit = movieFrontier[m];
+                if (visit == 0) continue;
+                for (int i = g.castOffsets[m]; i < g.castOffsets[m + 1]; i++) {
+                    int v = g.castMembers[i];
+                    long discovered = visit & ~seen[v];
+                    if (discovered != 0) {
+                        next[v] |= discovered;
+                        seen[v] |= discovered;
+                    }
+                }
+            }
+            active = false;
+            for (int v = 0; v < n; v++) {
+                long discovered = next[v];
+                if (discovered == 0) continue;
+                active = true;
+                while (discovered != 0) {
+                    int i = first + Long.numberOfTrailingZeros(discovered);
+                    reach[i]++;
+                    distanceSums[i] += level;
+                    discovered &= discovered - 1;
+                }
+            }
+            long[] swap = frontier;
+            frontier = next;
+            next = swap;
+            Arrays.fill(next, 0);
+        }
+    }
+
+    /**
+     * Estimates how many vertices every vertex reaches and the sum of its distances to them, in time near linear
+     * in the edges per level instead of one search per vertex (HyperANF, Boldi et al.). Each vertex keeps a
+     * HyperLogLog sketch of the ball around it; at step t every sketch takes the union of its neighbors' sketches,
+     * so it then counts the vertices within distance t, and the growth of the count at each step is the number
+     * of vertices at distance exactly t. Steps stop once no sketch changes.
+     * @param g an undirected graph
+     * @param relativeError target relative standard error of each count, which sets the sketch size
+     * @param reach filled with the estimated number of vertices each vertex reaches (not counting itself)
+     * @param distanceSums filled with the estimated sum of distances from each vertex to the vertices it reaches
      * @param <V>
      * @param <E>
      */
-    public static <V,E> void sepHelper(Graph<V,E> tree, List<Integer> paths, V root, int level) {
-        //if the subtree has no children (inNeighbors because it's a graph in this case) return 0
-        if (tree.inDegree(root) == 0) return;
-        //loop through each child of the tree
-        for (V vert : tree.inNeighbors(root)) {
-            //add length to list
-            paths.add(level);
-            //recurse on the children of the current vertex, while increasing the value of level
-            sepHelper(tree, paths, vert, level + 1);
+    public static <V,E> void approximateSeparation(IndexedGraph<V,E> g, double relativeError, double[] reach, double[] distanceSums) {
+        if (!(relativeError > 0 && relativeError < 1)) throw new IllegalArgumentException("Relative error must be in (0, 1): " + relativeError);
+        long start = Metrics.start();
+        int n = g.numVertices();
+        //standard error is about 1.04 / sqrt(registers), so round the registers needed up to a power of two
+        int bits = Math.max(4, Math.min(16, 64 - Long.numberOfLeadingZeros((long) Math.ceil(1.04 * 1.04 / (relativeError * relativeError)) - 1)));
+        int m = 1 << bits, words = m / 8; //registers are bytes, packed eight to a long
+        long[] current = new long[n * words], next = new long[n * words];
+        double[] count = new double[n]; //estimated size of each ball at the last step
+        for (int v = 0; v < n; v++) {
+            long h = mix(v);
+            long rank = Long.numberOfLeadingZeros(h >>> bits) - bits + 1; //position of the first one bit after the index bits
+            int register = (int) (h & (m - 1));
+            current[v * words + (register >>> 3)] = rank << ((register & 7) * 8);
+            count[v] = hllEstimate(current, v * words, words);
+            distanceSums[v] = 0;
+        }
+
+        //the graph's neighbor lists as CSR arrays; actor-movie graphs union through a sketch per movie instead
+        BipartiteGraph<?> bipartite = g instanceof BipartiteGraph ? (BipartiteGraph<?>) g : null;
+        MappedGraph<?> mapped = g instanceof MappedGraph ? (MappedGraph<?>) g : null;
+        int[] offsets = null, targets = null;
+        if (bipartite == null && mapped == null) {
+            int[][] rows = neighborRows(g);
+            offsets = rows[0];
+            targets = rows[1];
+        }
+        long[] movieSketches = bipartite == null && mapped == null ? null : new long[movieCount(g) * words];
+        boolean[] changed = new boolean[n], nextChanged = new boolean[n];
+        Arrays.fill(changed, true);
+
+        for (int t = 1; ; t++) {
+            final int step = t;
+            final long[] from = current, to = next;
+            final boolean[] fromChanged = changed, toChanged = nextChanged;
+            final int[] rowOffsets = offsets, rowTargets = targets;
+            if (bipartite != null) {
+                IntStream.range(0, bipartite.numMovies()).parallel().forEach(movie -> {
+                    Arrays.fill(movieSketches, movie * words, movie * words + words, 0);
+                    for (int i = bipartite.castOffsets[movie]; i < bipartite.castOffsets[movie + 1]; i++) {
+                        hllUnion(movieSketches, movie * words, from, bipartite.castMembers[i] * words, words);
+                    }
+                });
+            }
+            else if (mapped != null) {
+                IntStream.range(0, mapped.numMovies()).parallel().forEach(movie -> {
+                    Arrays.fill(movieSketches, movie * words, movie * words + words, 0);
+                    for (long i = mapped.castStart(movie); i < mapped.castEnd(movie); i++) {
+                        hllUnion(movieSketches, movie * words, from, mapped.castMember(i) * words, words);
+                    }
+                });
+            }
+            int updates = IntStream.range(0, n).parallel().map(v -> {
+                System.arraycopy(from, v * words, to, v * words, words);
+                boolean dirty = false;
+                if (bipartite != null) {
+                    for (int f = bipartite.filmOffsets[v]; f < bipartite.filmOffsets[v + 1]; f++) {
+                        dirty |= hllUnion(to, v * words, movieSketches, bipartite.films[f] * words, words);
+                    }
+                }
+                else if (mapped != null) {
+                    for (long f = mapped.filmStart(v); f < mapped.filmEnd(v); f++) {
+                        dirty |= hllUnion(to, v * words, movieSketches, mapped.film(f) * words, words);
+                    }
+                }
+                else {
+                    for (int e = rowOffsets[v]; e < rowOffsets[v + 1]; e++) {
+                        int u = rowTargets[e];
+                        if (fromChanged[u]) dirty |= hllUnion(to, v * words, from, u * words, words); //unchanged neighbors add nothing new
+                    }
+                }
+                toChanged[v] = dirty;
+                if (!dirty) return 0;
+                double grown = hllEstimate(to, v * words, words);
+                if (grown > count[v]) { //counts at each step are estimates, so only count growth
+                    distanceSums[v] += step * (grown - count[v]);
+                    count[v] = grown;
+                }
+                return 1;
+            }).sum();
+            current = to;
+            next = from;
+            changed = toChanged;
+            nextChanged = fromChanged;
+            if (updates == 0) break;
+        }
+        long[] lone = new long[words];
+        lone[0] = 1;
+        double single = hllEstimate(lone, 0, words); //every sketch starts out holding one vertex, whatever its register
+        for (int v = 0; v < n; v++) {
+            reach[v] = Math.max(0, count[v] - single);
+            if (reach[v] < 0.5) { //a lone vertex: its sketch can't have grown
+                reach[v] = 0;
+                distanceSums[v] = 0;
+            }
+        }
+        Metrics.stop("approximateSeparation", start);
+    }
+
+    private static final long HIGH_BITS = 0x8080808080808080L; //top bit of every byte
+
+    /**
+     * Takes the register-wise maximum of two sketches into the first, eight registers at a time.
+     * Registers stay below 128, so (x | HIGH_BITS) - y never borrows across bytes and leaves the top bit
+     * of a byte set exactly where x's register is at least y's.
+     * @return whether any register of the target grew
+     */
+    private static boolean hllUnion(long[] target, int to, long[] source, int from, int words) {
+        boolean grew = false;
+        for (int j = 0; j < words; j++) {
+            long x = target[to + j], y = source[from + j];
+            if (x == y) continue;
+            long keep = ((((x | HIGH_BITS) - y) & HIGH_BITS) >>> 7) * 0xFF; //0xFF in each byte where x wins
+            long max = (x & keep) | (y & ~keep);
+            if (max != x) {
+                target[to + j] = max;
+                grew = true;
+            }
+        }
+        return grew;
+    }
+
+    /**
+     * HyperLogLog cardinality estimate of the sketch at registers[from .. from+words), using linear counting
+     * while registers are still empty (Flajolet et al.)
+     */
+    private static double hllEstimate(long[] registers, int from, int words) {
+        int m = words * 8;
+        double harmonic = 0;
+        int zeros = 0;
+        for (int j = from; j < from + words; j++) {
+            for (int shift = 0; shift < 64; shift += 8) {
+                int register = (int) (registers[j] >>> shift) & 0xFF;
+                harmonic += Math.scalb(1.0, -register);
+                if (register == 0) zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / harmonic;
+        if (estimate <= 2.5 * m && zeros > 0) estimate = m * Math.log((double) m / zeros);
+        return estimate;
+    }
+
+    /**
+     * 64-bit finalizer of SplitMix64, spreading vertex ids into hash bits
+     */
+    private static long mix(long x) {
+        x += 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Finds the k vertices with the smallest (or largest) average separation without ranking every vertex.
+     * Searches run in parallel from every source and share the k-th best average found so far. Before each level,
+     * a search bounds the average it could still reach, and stops as soon as the bound shows it can't make the top k.
+     * Every vertex not yet found is at least one level further out. For the largest averages, each is also no further
+     * than the one found before it plus one, and no further than the source's distance to its component's hub
+     * plus the hub's distance to it (the triangle inequality, summed over the vertices not yet found).
+     * Sources in small components go first when looking for the smallest averages, and those with the highest
+     * upper bound when looking for the largest, so the threshold tightens early.
+     * @param g an undirected graph
+     * @param k
+     * @param largest if true, find the largest average separations instead of the smallest
+     * @param <V>
+     * @param <E>
+     * @return ids of the k vertices, by increasing average separation and then id, as a full ranking would list them
+     */
+    public static <V,E> int[] topCenters(IndexedGraph<V,E> g, int k, boolean largest) {
+        int n = g.numVertices();
+        k = Math.min(k, n);
+        if (k <= 0) return new int[0];
+        long start = Metrics.start();
+        HubDistances hubs = new HubDistances(g);
+        long[] keys = new long[n];
+        for (int v = 0; v < n; v++) {
+            //the float bits of a non-negative bound sort like the bound, so subtracting them reverses the order
+            int order = largest ? Integer.MAX_VALUE - Float.floatToIntBits((float) hubs.separationBound(v)) : hubs.components.size(hubs.components.componentOf(v));
+            keys[v] = ((long) order << 32) | v;
+        }
+        Arrays.sort(keys);
+        CenterSearch search = new CenterSearch(g, k, largest, hubs);
+        //the first k sources, run in order, give the parallel searches a threshold to start from
+        for (int i = 0; i < k; i++) search.run((int) keys[i]);
+        IntStream.range(k, n).parallel().forEach(i -> search.run((int) keys[i]));
+        Metrics.stop("topCenters", start);
+        return search.result();
+    }
+
+    /**
+     * Shared state of a top-k center search: the best k sources so far, kept in a heap with the worst on top,
+     * and the threshold a new source has to beat
+     */
+    private static class CenterSearch {
+        private final IndexedGraph<?,?> g;
+        private final int k;
+        private final boolean largest;
+        private final HubDistances hubs;
+        private final double[] averages;
+        private final PriorityQueue<Integer> best; //worst of the best k on top
+        private volatile double threshold; //average of the worst of the best k, once there are k
+        private final ThreadLocal<int[][]> scratch; //per-thread visit stamps, queue and movie stamps
+
+        CenterSearch(IndexedGraph<?,?> g, int k, boolean largest, HubDistances hubs) {
+            this.g = g;
+            this.k = k;
+            this.largest = largest;
+            this.hubs = hubs;
+            int n = g.numVertices();
+            averages = new double[n];
+            Comparator<Integer> ranking = (a, b) -> averages[a] != averages[b] ? Double.compare(averages[a], averages[b]) : Integer.compare(a, b);
+            best = new PriorityQueue<>(largest ? ranking : ranking.reversed());
+            threshold = largest ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+            int movies = movieCount(g);
+            scratch = ThreadLocal.withInitial(() -> new int[][] {new int[n], new int[n], new int[movies], new int[1]});
+        }
+
+        /**
+         * Level-synchronous search from one source, abandoned once its average is bounded out of the top k
+         * @param source
+         */
+        void run(int source) {
+            int c = hubs.components.componentOf(source);
+            int reach = hubs.components.size(c) - 1;
+            if (reach == 0) {
+                offer(source, 0);
+                return;
+            }
+            int[][] buffers = scratch.get();
+            int[] stamp = buffers[0], queue = buffers[1], movieStamp = buffers[2];
+            int mark = ++buffers[3][0]; //vertices stamped with this search's mark have been found
+            stamp[source] = mark;
+            queue[0] = source;
+            int head = 0, tail = 1, d = 0;
+            int toHub = hubs.hubDistance[source], eccentricity = toHub + hubs.hubEccentricity[c];
+            long sum = 0, unfoundFromHub = hubs.hubSum[c] - toHub; //hub distances of the vertices not found yet
+            while (true) {
+                long rest = reach - (tail - 1); //vertices not found yet
+                if (rest == 0) break;
+                double bound;
+                if (largest) {
+                    long rising = Math.max(0, Math.min(rest, eccentricity - d)); //the i-th still to be found is within d + i
+                    long byLevel = rising * d + rising * (rising + 1) / 2 + (rest - rising) * eccentricity;
+                    bound = (sum + Math.min(byLevel, rest * toHub + unfoundFromHub)) / (double) reach;
+                }
+                else bound = (sum + rest * (d + 1)) / (double) reach;
+                if (largest ? bound < threshold : bound > threshold) return;
+
+                int levelEnd = tail;
+                tail = expandLevel(g, queue, head, levelEnd, tail, stamp, movieStamp, mark);
+                head = levelEnd;
+                d++;
+                sum += (long) d * (tail - levelEnd);
+                if (largest) for (int i = levelEnd; i < tail; i++) unfoundFromHub -= hubs.hubDistance[queue[i]];
+            }
+            offer(source, (double) sum / reach);
+        }
+
+        synchronized void offer(int source, double average) {
+            averages[source] = average;
+            best.add(source);
+            if (best.size() > k) best.poll();
+            if (best.size() == k) threshold = averages[best.peek()];
+        }
+
+        synchronized int[] result() {
+            int[] ids = new int[best.size()];
+            //the heap gives up the worst first: the largest average when keeping the smallest, and the other way round
+            for (int i = 0; i < ids.length; i++) ids[largest ? i : ids.length - 1 - i] = best.poll();
+            return ids;
+        }
+    }
+
+    /**
+     * Connected components of an undirected graph, each measured from a hub (its vertex of highest degree):
+     * the distance of every vertex from its hub, and each hub's sum of distances and eccentricity.
+     * One search per component, from its hub; the components themselves come from Components.
+     */
+    private static class HubDistances {
+        final Components components; //which vertices can reach each other
+        final int[] hubDistance; //distance of each vertex from the hub of its component
+        final long[] hubSum; //sum of the hub's distances to the vertices of its component
+        final int[] hubEccentricity; //greatest distance from the hub within its component
+
+        <V,E> HubDistances(IndexedGraph<V,E> g) {
+            int n = g.numVertices();
+            components = new Components(g);
+            int count = components.count();
+            hubDistance = new int[n];
+            hubSum = new long[count];
+            hubEccentricity = new int[count];
+            int[] queue = new int[n];
+            Arrays.fill(hubDistance, -1);
+            for (int c = 0; c < count; c++) {
+                int hub = components.member(c, 0);
+                for (int i = 1; i < components.size(c); i++) {
+                    int v = components.member(c, i);
+                    if (g.outDegreeAt(v) > g.outDegreeAt(hub)) hub = v;
+                }
+                queue[0] = hub;
+                hubDistance[hub] = 0;
+                int tail = 1;
+                for (int head = 0; head < tail; head++) {
+                    int u = queue[head];
+                    for (int v : neighborIds(g, u)) {
+                        if (hubDistance[v] < 0) {
+                            hubDistance[v] = hubDistance[u] + 1;
+                            hubSum[c] += hubDistance[v];
+                            queue[tail++] = v;
+                        }
+                    }
+                }
+                hubEccentricity[c] = hubDistance[queue[tail - 1]]; //the last vertex found is the furthest
+            }
+        }
+
+        /**
+         * Upper bound on the average separation of a vertex: the lesser of its eccentricity bound and its average
+         * distance through the hub
+         * @param v
+         * @return
+         */
+        double separationBound(int v) {
+            int c = components.componentOf(v);
+            long reach = components.size(c) - 1;
+            if (reach == 0) return 0;
+            int eccentricity = hubDistance[v] + hubEccentricity[c];
+            long rising = Math.min(reach, eccentricity); //the i-th closest vertex is within distance i
+            long byLevel = rising * (rising + 1) / 2 + (reach - rising) * eccentricity;
+            return Math.min(byLevel, reach * hubDistance[v] + hubSum[c] - hubDistance[v]) / (double) reach;
+        }
+    }
+
+    /**
+     * Exact betweenness centrality of every vertex of an undirected graph: the number of shortest paths between
+     * pairs of other vertices that pass through it, each pair's paths sharing one unit (Brandes)
+     * @param g an undirected graph
+     * @param <V>
+     * @param <E>
+     * @return betweenness of each vertex id
+     */
+    public static <V,E> double[] betweenness(IndexedGraph<V,E> g) {
+        return betweenness(g, g.numVertices(), 0);
+    }
+
+    /**
+     * Betweenness centrality from a uniform sample of sources, scaled by n / samples so that it estimates the
+     * exact value (Brandes and Pich); the error shrinks like 1 / sqrt(samples). Each source adds its
+     * dependencies in one BFS forward, counting shortest paths, and one pass back over the BFS order. Sources
+     * run in parallel on the common fork-join pool, each range of them accumulating into its own array, and the
+     * arrays are summed as the ranges join. Actor-movie graphs, in memory or mapped, are searched through their
+     * film and cast rows, never copying out their co-star edges.
+     * @param g an undirected graph
+     * @param samples number of sources; n or more gives the exact values
+     * @param seed chooses the sources
+     * @param <V>
+     * @param <E>
+     * @return betweenness of each vertex id
+     */
+    public static <V,E> double[] betweenness(IndexedGraph<V,E> g, int samples, long seed) {
+        if (samples <= 0) throw new IllegalArgumentException("Need at least one source: " + samples);
+        int n = g.numVertices();
+        if (n == 0) return new double[0];
+        long start = Metrics.start();
+        int[] sources = new int[n];
+        for (int v = 0; v < n; v++) sources[v] = v;
+        if (samples < n) { //the first samples entries of a partial shuffle
+            SplittableRandom random = new SplittableRandom(seed);
+            for (int i = 0; i < samples; i++) {
+                int j = i + random.nextInt(n - i);
+                int t = sources[i];
+                sources[i] = sources[j];
+                sources[j] = t;
+            }
+            sources = Arrays.copyOf(sources, samples);
+        }
+        int grain = Math.max(1, sources.length / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        BetweennessTask task;
+        if (g instanceof BipartiteGraph || g instanceof MappedGraph) task = new BetweennessTask(null, null, g, n, sources, 0, sources.length, grain);
+        else {
+            int[][] rows = neighborRows(g);
+            task = new BetweennessTask(rows[0], rows[1], null, n, sources, 0, sources.length, grain);
+        }
+        double[] scores = ForkJoinPool.commonPool().invoke(task);
+        //every pair is counted from both of its ends, and a sample stands in for n / samples times as many sources
+        double scale = (double) n / sources.length / 2;
+        for (int v = 0; v < n; v++) scores[v] *= scale;
+        Metrics.stop("betweenness", start);
+        return scores;
+    }
+
+    /**
+     * Splits a range of sources in half until it is at most grain long, then accumulates the dependencies of
+     * each source in the range into an array of its own. Neighbors come from CSR rows, or from an actor-movie
+     * graph's films, where a co-star shows up once per shared film and a stamp array keeps all but the first out.
+     */
+    private static class BetweennessTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] offsets, targets, sources;
+        private final IndexedGraph<?,?> actorMovie; //a BipartiteGraph or MappedGraph searched instead of the rows, or null
+        private final int n, from, to, grain;
+
+        BetweennessTask(int[] offsets, int[] targets, IndexedGraph<?,?> actorMovie, int n, int[] sources, int from, int to, int grain) {
+            this.offsets = offsets;
+            this.targets = targets;
+            this.actorMovie = actorMovie;
+            this.n = n;
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        protected double[] compute() {
+            if (to - from > grain) {
+                int mid = (from + to) >>> 1;
+                BetweennessTask left = new BetweennessTask(offsets, targets, actorMovie, n, sources, from, mid, grain);
+                left.fork();
+                double[] scores = new BetweennessTask(offsets, targets, actorMovie, n, sources, mid, to, grain).compute();
+                double[] other = left.join();
+                for (int v = 0; v < n; v++) scores[v] += other[v];
+                return scores;
+            }
+            double[] scores = new double[n];
+            int[] distance = new int[n], order = new int[n];
+            double[] paths = new double[n], dependency = new double[n];
+            Arrays.fill(distance, -1);
+            int[] stamp = actorMovie == null ? null : new int[n]; //stamp[v] == visit once v is listed for the current vertex
+            int visit = 0;
+            int[] row = targets; //neighbors of the current vertex are row[start .. end)
+            if (actorMovie != null) {
+                int maxDegree = 0;
+                for (int v = 0; v < n; v++) maxDegree = Math.max(maxDegree, actorMovie.outDegreeAt(v));
+                row = new int[maxDegree];
+            }
+            for (int i = from; i < to; i++) {
+                int s = sources[i];
+                //forward: BFS order, and the number of shortest paths from s to each vertex
+                distance[s] = 0;
+                paths[s] = 1;
+                order[0] = s;
+                int tail = 1;
+                for (int head = 0; head < tail; head++) {
+                    int u = order[head];
+                    int start = 0, end;
+                    if (actorMovie == null) {
+                        start = offsets[u];
+                        end = offsets[u + 1];
+                    }
+                    else {
+                        if (++visit == Integer.MAX_VALUE) visit = resetStamps(stamp);
+                        end = coStarRow(actorMovie, u, row, stamp, visit);
+                    }
+                    for (int e = start; e < end; e++) {
+                        int v = row[e];
+                        if (distance[v] < 0) {
+                            distance[v] = distance[u] + 1;
+                            order[tail++] = v;
+                        }
+                        if (distance[v] == distance[u] + 1) paths[v] += paths[u];
+                    }
+                }
+                //back: each vertex passes its dependency to the neighbors one level closer, split by their paths
+                for (int k = tail - 1; k > 0; k--) {
+                    int w = order[k];
+                    double share = (1 + dependency[w]) / paths[w];
+                    int start = 0, end;
+                    if (actorMovie == null) {
+                        start = offsets[w];
+                        end = offsets[w + 1];
+                    }
+                    else {
+                        if (++visit == Integer.MAX_VALUE) visit = resetStamps(stamp);
+                        end = coStarRow(actorMovie, w, row, stamp, visit);
+                    }
+                    for (int e = start; e < end; e++) {
+                        int v = row[e];
+                        if (distance[v] == distance[w] - 1) dependency[v] += paths[v] * share;
+                    }
+                    scores[w] += dependency[w];
+                }
+                for (int k = 0; k < tail; k++) {
+                    int v = order[k];
+                    distance[v] = -1;
+                    paths[v] = 0;
+                    dependency[v] = 0;
+                }
+            }
+            return scores;
+        }
+
+        /**
+         * Lists the distinct co-stars of u in an actor-movie graph, in the order its films give them
+         * @param actorMovie a BipartiteGraph or MappedGraph
+         * @param u
+         * @param row filled with the co-stars
+         * @param stamp marks co-stars already listed with visit
+         * @param visit a value no entry of stamp holds yet
+         * @return number of co-stars listed
+         */
+        private static int coStarRow(IndexedGraph<?,?> actorMovie, int u, int[] row, int[] stamp, int visit) {
+            int size = 0;
+            if (actorMovie instanceof BipartiteGraph) {
+                BipartiteGraph<?> g = (BipartiteGraph<?>) actorMovie;
+                for (int f = g.filmOffsets[u]; f < g.filmOffsets[u + 1]; f++) {
+                    int m = g.films[f];
+                    for (int c = g.castOffsets[m]; c < g.castOffsets[m + 1]; c++) {
+                        int v = g.castMembers[c];
+                        if (v != u && stamp[v] != visit) {
+                            stamp[v] = visit;
+                            row[size++] = v;
+                        }
+                    }
+                }
+                return size;
+            }
+            MappedGraph<?> g = (MappedGraph<?>) actorMovie;
+            for (long f = g.filmStart(u); f < g.filmEnd(u); f++) {
+                int m = g.film(f);
+                for (long c = g.castStart(m); c < g.castEnd(m); c++) {
+                    int v = g.castMember(c);
+                    if (v != u && stamp[v] != visit) {
+                        stamp[v] = visit;
+                        row[size++] = v;
+                    }
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Clears a stamp array whose visit counter is about to overflow
+         * @param stamp
+         * @return the next visit value to use
+         */
+        private static int resetStamps(int[] stamp) {
+            Arrays.fill(stamp, 0);
+            return 1;
+        }
+    }
+
+    /**
+     * Throws if a self-check in main fails
+     * @param passed
+     * @param check what was checked
+     */
+    private static void check(boolean passed, String check) {
+        if (!passed) throw new IllegalStateException("Check failed: " + check);
+    }
+
+    /**
+     * Betweenness counted pair by pair: for every pair of connected vertices s and t, each vertex v on one of
+     * their shortest paths gets the fraction of those paths that pass through it. Slow, but too simple to be
+     * wrong, so main checks betweenness against it.
+     * @param g an undirected graph
+     * @return betweenness of each vertex id
+     */
+    private static double[] countedBetweenness(IndexedGraph<?,?> g) {
+        int n = g.numVertices();
+        int[][] distance = new int[n][];
+        double[][] paths = new double[n][];
+        for (int s = 0; s < n; s++) {
+            distance[s] = new int[n];
+            paths[s] = new double[n];
+            Arrays.fill(distance[s], -1);
+            int[] queue = new int[n];
+            int tail = 0;
+            queue[tail++] = s;
+            distance[s][s] = 0;
+            paths[s][s] = 1;
+            for (int head = 0; head < tail; head++) {
+                int u = queue[head];
+                for (int v : neighborIds(g, u)) {
+                    if (distance[s][v] < 0) {
+                        distance[s][v] = distance[s][u] + 1;
+                        queue[tail++] = v;
+                    }
+                    if (distance[s][v] == distance[s][u] + 1) paths[s][v] += paths[s][u];
+                }
+            }
+        }
+        double[] scores = new double[n];
+        for (int s = 0; s < n; s++) {
+            for (int t = s + 1; t < n; t++) {
+                if (distance[s][t] < 0) continue;
+                for (int v = 0; v < n; v++) {
+                    if (v == s || v == t || distance[s][v] < 0 || distance[v][t] < 0) continue;
+                    if (distance[s][v] + distance[v][t] == distance[s][t]) scores[v] += paths[s][v] * paths[v][t] / paths[s][t];
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Checks that betweenness matches the pair by pair count
+     * @param name of the graph, for failures
+     * @param g
+     * @param expected the pair by pair count
+     */
+    private static void checkBetweenness(String name, IndexedGraph<?,?> g, double[] expected) {
+        double[] scores = betweenness(g);
+        for (int v = 0; v < expected.length; v++) {
+            check(Math.abs(scores[v] - expected[v]) <= 1e-9 * Math.max(1, expected[v]), name + " betweenness of " + v);
+        }
+    }
+
+    /**
+     * Checks topCenters, both ways round and for several k, against every vertex ranked by the average separation
+     * of a full search from it, ties by id
+     * @param name of the graph, for failures
+     * @param g
+     * @return number of vertices whose average ties with the next one in the ranking
+     */
+    private static int checkCenters(String name, IndexedGraph<?,?> g) {
+        int n = g.numVertices();
+        double[] averages = new double[n];
+        Integer[] ranking = new Integer[n];
+        for (int v = 0; v < n; v++) {
+            averages[v] = averageSeparation(bfs(g, v));
+            ranking[v] = v;
+        }
+        Arrays.sort(ranking, (a, b) -> averages[a] != averages[b] ? Double.compare(averages[a], averages[b]) : Integer.compare(a, b));
+        for (int k : new int[] {1, 2, 5, 17, n / 2, n}) {
+            k = Math.min(k, n);
+            int[] smallest = topCenters(g, k, false), largest = topCenters(g, k, true);
+            check(smallest.length == k && largest.length == k, name + " number of top " + k + " centers");
+            for (int i = 0; i < k; i++) {
+                check(smallest[i] == ranking[i], name + " center " + i + " of the best " + k);
+                check(largest[i] == ranking[n - k + i], name + " center " + i + " of the worst " + k);
+            }
+        }
+        int ties = 0;
+        for (int i = 1; i < n; i++) if (averages[ranking[i]] == averages[ranking[i - 1]]) ties++;
+        return ties;
+    }
+
+    /**
+     * Checks that distance labels give the same distance as a breadth first search between every pair
+     * @param name of the graph, for failures
+     * @param g
+     * @param index labels of g
+     */
+    private static void checkDistances(String name, IndexedGraph<?,?> g, DistanceIndex index) {
+        int n = g.numVertices();
+        int[] all = new int[n];
+        for (int v = 0; v < n; v++) all[v] = v;
+        for (int s = 0; s < n; s++) {
+            ShortestPathTree tree = bfs(g, s);
+            int[] from = index.distancesFrom(s, all);
+            for (int v = 0; v < n; v++) {
+                int expected = tree.isReachable(v) ? tree.distance(v) : -1;
+                check(index.distance(s, v) == expected && from[v] == expected, name + " distance from " + s + " to " + v);
+            }
+        }
+    }
+
+    /**
+     * Writes an actor-movie universe as the three data files, movie m titled "Movie m"
+     * @param dir
+     * @param names actor names by id
+     * @param castOffsets
+     * @param castMembers
+     * @return paths of the actor, movie and movie-actor files
+     * @throws IOException
+     */
+    private static String[] writeUniverse(Path dir, SymbolTable<String> names, int[] castOffsets, int[] castMembers) throws IOException {
+        String[] paths = {dir.resolve("actors.txt").toString(), dir.resolve("movies.txt").toString(), dir.resolve("movie-actors.txt").toString()};
+        try (PrintWriter actors = new PrintWriter(paths[0]); PrintWriter movies = new PrintWriter(paths[1]);
+             PrintWriter casts = new PrintWriter(paths[2])) {
+            for (int a = 0; a < names.size(); a++) actors.println(a + "|" + names.symbol(a));
+            for (int m = 0; m + 1 < castOffsets.length; m++) {
+                movies.println(m + "|Movie " + m);
+                for (int i = castOffsets[m]; i < castOffsets[m + 1]; i++) casts.println(m + "|" + castMembers[i]);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Makes random cast changes through a Game and checks after each one that the center's repaired tree, the
+     * degree index and the components match those of a graph rebuilt from the casts
+     * @param files data files of a universe whose actor 0 is Kevin Bacon
+     * @param names actor names by id
+     * @param castOffsets casts in the files, movie m's titled "Movie m"
+     * @param castMembers
+     * @param bipartite which graph the game keeps
+     * @param seed chooses the changes
+     */
+    private static void checkCastEdits(String[] files, SymbolTable<String> names, int[] castOffsets, int[] castMembers, boolean bipartite, long seed) {
+        String mode = bipartite ? "actor-movie" : "co-star";
+        Game game = new Game(files[0], files[1], files[2], 1 << 20, bipartite, false);
+        int center = game.center();
+        check(center == 0, mode + " center");
+        game.separationRange(center, 0, 0); //caches the center's tree, which each change then repairs
+        SymbolTable<String> actors = new SymbolTable<>(); //gets new actors in the same order as the game
+        for (int a = 0; a < names.size(); a++) actors.intern(names.symbol(a));
+        Map<String, int[]> casts = new LinkedHashMap<>();
+        for (int m = 0; m + 1 < castOffsets.length; m++) casts.put("Movie " + m, Arrays.copyOfRange(castMembers, castOffsets[m], castOffsets[m + 1]));
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int step = 0; step < 200; step++) {
+            String change = mode + " step " + step;
+            if (random.nextBoolean() && !casts.isEmpty()) {
+                List<String> titles = new ArrayList<>(casts.keySet());
+                String title = titles.get(random.nextInt(titles.size()));
+                check(game.removeMovie(title), change + " removes " + title);
+                casts.remove(title);
+            }
+            else {
+                List<String> cast = new ArrayList<>();
+                int size = 1 + random.nextInt(5);
+                for (int i = 0; i < size; i++) {
+                    cast.add(random.nextInt(8) == 0 ? "New Actor " + random.nextInt(10) : actors.symbol(random.nextInt(actors.size())));
+                }
+                game.addMovie("New Movie " + step, cast);
+                TreeSet<Integer> ids = new TreeSet<>();
+                for (String name : cast) ids.add(actors.intern(name));
+                casts.put("New Movie " + step, ids.stream().mapToInt(Integer::intValue).toArray());
+            }
+
+            int[] offsets = new int[casts.size() + 1];
+            int m = 0;
+            for (int[] cast : casts.values()) offsets[m + 1] = offsets[m++] + cast.length;
+            int[] members = new int[offsets[m]];
+            m = 0;
+            for (int[] cast : casts.values()) System.arraycopy(cast, 0, members, offsets[m++], cast.length);
+            BipartiteGraph<String> rebuilt = new BipartiteGraph<>(actors, casts.size(), offsets, members);
+            int n = rebuilt.numVertices();
+            check(game.actorName(n - 1).equals(actors.symbol(n - 1)), change + " actor ids");
+
+            ShortestPathTree repaired = game.getCache().get(center), fresh = bfs(rebuilt, center);
+            check(repaired != null, change + " keeps the center's tree");
+            check(repaired.reachCount() == fresh.reachCount() && repaired.levels() == fresh.levels(), change + " reach of the repaired tree");
+            for (int d = 0; d < fresh.levels(); d++) check(repaired.levelSize(d) == fresh.levelSize(d), change + " size of level " + d);
+            for (int v = 0; v < n; v++) {
+                check(repaired.distance(v) == fresh.distance(v), change + " repaired distance to " + v);
+                int p = repaired.parent(v);
+                check(p < 0 || p == v || (rebuilt.labelBetween(p, v) != null && repaired.distance(p) + 1 == repaired.distance(v)), change + " repaired parent of " + v);
+            }
+
+            int low = random.nextInt(4), high = low + random.nextInt(8);
+            List<String> expected = new ArrayList<>(), actual = game.degreeRange(low, high);
+            for (int v : new DegreeIndex(rebuilt).range(low, high)) expected.add(actors.symbol(v));
+            for (int i = 1; i < actual.size(); i++) {
+                check(rebuilt.outDegreeAt(actors.indexOf(actual.get(i - 1))) <= rebuilt.outDegreeAt(actors.indexOf(actual.get(i))), change + " degree order");
+            }
+            Collections.sort(expected);
+            actual = new ArrayList<>(actual);
+            Collections.sort(actual);
+            check(actual.equals(expected), change + " degrees between " + low + " and " + high);
+
+            Components components = new Components(rebuilt);
+            for (int v : new int[] {center, random.nextInt(n)}) {
+                List<String> outside = new ArrayList<>();
+                for (int w : components.outside(components.componentOf(v))) outside.add(actors.symbol(w));
+                check(game.infiniteSeparation(v).equals(outside), change + " component of " + v);
+            }
         }
     }
 
     /**
      * A main method to test all the static methods on a small scale graph
      * @param args
+     * @throws IOException if the mapped graph's files can't be written
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         //create a the graph included in the instructions for testing of the four static methods
         Graph<String, String> relationships = new AdjacencyMapGraph<String, String>();
         //add vertices
@@ -155,6 +1739,17 @@ public class GraphLibrary {
         relationships.insertUndirected("Nobody", "Nobody's Friend", "F movie");
 
         System.out.println(relationships);
+        //load the same graph into a concurrent graph in one batch, then check a snapshot ignores later changes
+        ConcurrentGraph<String, String> concurrent = new ConcurrentGraph<String, String>();
+        ConcurrentGraph<String, String>.Batch load = concurrent.batch();
+        for (String v : relationships.vertices()) load.insertVertex(v);
+        for (String u : relationships.vertices()) {
+            for (String v : relationships.outNeighbors(u)) load.insertDirected(u, v, relationships.getLabel(u, v));
+        }
+        Graph<String, String> before = load.commit();
+        concurrent.removeVertex("Alice");
+        System.out.println("Concurrent graph: " + before.numVertices() + " vertices and " + before.numEdges() +
+                " edges in the snapshot, " + concurrent.numVertices() + " and " + concurrent.numEdges() + " after removing Alice");
         //run bfs on the graph with "Bacon" being the root for the test
         Graph<String, String> tree = GraphLibrary.bfs(relationships, "Bacon");
         System.out.println(tree);
@@ -169,5 +1764,157 @@ public class GraphLibrary {
         System.out.println("Not in subgraph: " + GraphLibrary.missingVertices(relationships, subGraph));
         //find the average separation between the root ("Bacon" in this case) and the other vertices
         System.out.println("Average Separation (Bacon as root): " + GraphLibrary.averageSeparation(tree, "Bacon"));
+        //the same queries on a compact copy of the graph should give the same answers
+        Graph<String, String> compact = CompactGraph.freeze(relationships);
+        System.out.println(compact);
+        System.out.println(GraphLibrary.getPath(GraphLibrary.bfs(compact, "Bacon"), "Charlie"));
+        System.out.println("Average Separation (compact, Bacon as root): " + GraphLibrary.averageSeparation(GraphLibrary.bfs(compact, "Bacon"), "Bacon"));
+        //and again through vertex ids
+        CompactGraph<String, String> indexed = CompactGraph.freeze(relationships);
+        ShortestPathTree shortest = GraphLibrary.bfs(indexed, indexed.indexOf("Bacon"));
+        List<String> idPath = new ArrayList<>();
+        for (int id : shortest.path(indexed.indexOf("Charlie"))) idPath.add(indexed.vertexAt(id));
+        System.out.println(idPath + ", distance " + shortest.distance(indexed.indexOf("Charlie")) +
+                ", Nobody reachable: " + shortest.isReachable(indexed.indexOf("Nobody")));
+        System.out.println("Average Separation (ids, Bacon as root): " + GraphLibrary.averageSeparation(shortest));
+        System.out.println("Bidirectional path from Earl to Bacon: " + GraphLibrary.bidirectionalPath(indexed, indexed.indexOf("Earl"), indexed.indexOf("Bacon")));
+        System.out.println("Bidirectional path from Earl to Nobody: " + GraphLibrary.bidirectionalPath(indexed, indexed.indexOf("Earl"), indexed.indexOf("Nobody")));
+        ShortestPathTree optimized = GraphLibrary.bfs(indexed, indexed.indexOf("Bacon"), TraversalMode.DIRECTION_OPTIMIZING);
+        System.out.println("Average Separation (direction optimizing, Bacon as root): " + GraphLibrary.averageSeparation(optimized));
+        System.out.println(GraphLibrary.separationStats(indexed, indexed.indexOf("Bacon")));
+        //the same universe stored as actor-movie adjacency: movies A, B, C, D, F are ids 0..4
+        SymbolTable<String> cast = new SymbolTable<>();
+        for (String actor : new String[] {"Bacon", "Alice", "Bob", "Charlie", "Earl", "Nobody", "Nobody's Friend"}) cast.intern(actor);
+        int[] castOffsets = {0, 3, 5, 7, 9, 11};
+        int[] castMembers = {0, 1, 2, 3, 4, 2, 3, 1, 3, 5, 6};
+        BipartiteGraph<String> actorMovie = new BipartiteGraph<>(cast, 5, castOffsets, castMembers);
+        System.out.println(actorMovie + ", Bob-Charlie share movies " + Arrays.toString(actorMovie.getLabel("Bob", "Charlie")));
+        System.out.println("Average Separation (bipartite, Bacon as root): " + GraphLibrary.averageSeparation(GraphLibrary.bfs(actorMovie, 0)));
+        //run every vertex as a source at once and compare with the single-source averages
+        int[] sources = new int[indexed.numVertices()];
+        for (int v = 0; v < sources.length; v++) sources[v] = v;
+        int[] reach = new int[sources.length];
+        long[] distanceSums = new long[sources.length];
+        GraphLibrary.multiSourceBfs(indexed, sources, reach, distanceSums);
+        for (int v : sources) {
+            System.out.println(indexed.vertexAt(v) + ": reaches " + reach[v] + ", average separation " +
+                    (reach[v] == 0 ? 0 : (double) distanceSums[v] / reach[v]) + " (single source " +
+                    GraphLibrary.averageSeparation(GraphLibrary.bfs(indexed, v)) + ")");
+        }
+        Components components = new Components(indexed);
+        System.out.println(components + ", Nobody connected to Bacon: " +
+                components.connected(indexed.indexOf("Nobody"), indexed.indexOf("Bacon")));
+        System.out.println("Two best centers: " + Arrays.toString(GraphLibrary.topCenters(indexed, 2, false)) +
+                ", two worst: " + Arrays.toString(GraphLibrary.topCenters(indexed, 2, true)));
+        //estimate the same averages from neighborhood sketches
+        double[] approximateReach = new double[sources.length], approximateSums = new double[sources.length];
+        GraphLibrary.approximateSeparation(indexed, 0.05, approximateReach, approximateSums);
+        for (int v : sources) {
+            System.out.println(indexed.vertexAt(v) + ": reaches about " + approximateReach[v] + ", average separation about " +
+                    (approximateReach[v] == 0 ? 0 : approximateSums[v] / approximateReach[v]));
+        }
+        //cut Alice from Charlie, connect Earl to Nobody, and repair the Bacon tree instead of searching again
+        int alice = indexed.indexOf("Alice"), charlie = indexed.indexOf("Charlie");
+        int earl = indexed.indexOf("Earl"), nobody = indexed.indexOf("Nobody");
+        indexed.updateEdges(new int[] {alice, charlie, earl, nobody}, new int[] {charlie, alice, nobody, earl},
+                new String[] {null, null, "G movie", "G movie"});
+        GraphLibrary.repairBfs(indexed, optimized, new int[] {alice, charlie, earl, nobody});
+        System.out.println("Repaired path from Bacon to Nobody: " + Arrays.toString(optimized.path(nobody)) +
+                ", average separation " + GraphLibrary.averageSeparation(optimized) +
+                " (full search " + GraphLibrary.averageSeparation(GraphLibrary.bfs(indexed, indexed.indexOf("Bacon"))) + ")");
+
+        //a random universe where actors often share several movies, and five actors are in none, so it has
+        //several components; its mapped file, betweenness and distance labels must agree with the in-memory graphs
+        SplittableRandom random = new SplittableRandom(17);
+        int numActors = 80, numMovies = 60;
+        int[] randomOffsets = new int[numMovies + 1];
+        List<Integer> randomMembers = new ArrayList<>();
+        for (int m = 0; m < numMovies; m++) {
+            TreeSet<Integer> movieCast = new TreeSet<>();
+            int size = 1 + random.nextInt(6);
+            while (movieCast.size() < size) movieCast.add(random.nextInt(numActors - 5)); //the last five never act
+            randomMembers.addAll(movieCast);
+            randomOffsets[m + 1] = randomMembers.size();
+        }
+        int[] members = new int[randomMembers.size()];
+        for (int i = 0; i < members.length; i++) members[i] = randomMembers.get(i);
+        SymbolTable<String> randomCast = new SymbolTable<>();
+        for (int a = 0; a < numActors; a++) randomCast.intern(a == 0 ? "Kevin Bacon" : "Actor " + a); //the game's center
+        BipartiteGraph<String> universe = new BipartiteGraph<>(randomCast, numMovies, randomOffsets, members);
+        CompactGraph<String, int[]> universeCoStars = universe.project();
+
+        Path dir = Files.createTempDirectory("universe");
+        dir.toFile().deleteOnExit(); //registered first, so deleted last, once the files in it are gone
+        String[] files = writeUniverse(dir, randomCast, randomOffsets, members);
+        String graphFile = dir.resolve("actors.txt.graph").toString(), labelFile = dir.resolve("actors.txt.labels").toString();
+        for (String file : new String[] {files[0], files[1], files[2], graphFile, labelFile, files[0] + ".snapshot"}) new File(file).deleteOnExit();
+        SymbolTable<String> mappedCast = new SymbolTable<>(), mappedMovies = new SymbolTable<>();
+        IntUnaryOperator actorIds = DataIngest.internNames(files[0], mappedCast);
+        IntUnaryOperator movieIds = DataIngest.internNames(files[1], mappedMovies);
+        byte[] stamp = GraphSnapshot.stamp(files);
+        MappedGraph.write(files[2], actorIds, mappedCast.size(), movieIds, mappedMovies.size(), graphFile, stamp);
+        MappedGraph<String> mapped = MappedGraph.open(graphFile, mappedCast);
+        System.out.println(universe + "\n" + mapped);
+
+        //derived files are fresh while they record the stamp of the text files, whichever way their times move
+        String snapshotFile = files[0] + ".snapshot";
+        new GraphSnapshot(mappedCast, mappedMovies, randomOffsets, members, universeCoStars).save(snapshotFile, stamp);
+        check(GraphSnapshot.isFresh(graphFile, stamp) && GraphSnapshot.isFresh(snapshotFile, stamp), "stamped files fresh");
+        check(GraphSnapshot.load(snapshotFile, new LabelStore(), false).coStars() == null, "snapshot co-stars skipped");
+        check(GraphSnapshot.load(snapshotFile, new LabelStore(), true).coStars().numEdges() == universeCoStars.numEdges(), "snapshot co-stars read");
+        check(new File(files[2]).setLastModified(new File(files[2]).lastModified() - 60_000), "move back the movie-actors time");
+        check(!GraphSnapshot.isFresh(snapshotFile, GraphSnapshot.stamp(files)), "snapshot stale once an input changes");
+        check(!GraphSnapshot.isFresh(snapshotFile, GraphSnapshot.stamp(files[1], files[0], files[2])), "snapshot stale for other inputs");
+        stamp = GraphSnapshot.stamp(files);
+
+        check(mapped.numVertices() == numActors && mapped.numEdges() == universe.numEdges(), "mapped graph size");
+        Components universeComponents = new Components(universe), mappedComponents = new Components(mapped);
+        check(mappedComponents.count() == universeComponents.count(), "mapped component count");
+        for (int u = 0; u < numActors; u++) {
+            check(mapped.vertexAt(u).equals(universe.vertexAt(u)), "mapped name of " + u);
+            check(mapped.outDegreeAt(u) == universe.outDegreeAt(u), "mapped degree of " + u);
+            check(Arrays.equals(mapped.coStars(u), universe.coStars(u)), "mapped co-stars of " + u);
+            ShortestPathTree expected = bfs(universeCoStars, u), actual = bfs(mapped, u);
+            check(actual.reachCount() == expected.reachCount(), "mapped reach from " + u);
+            for (int v = 0; v < numActors; v++) {
+                check(actual.isReachable(v) == expected.isReachable(v) && (!expected.isReachable(v) || actual.distance(v) == expected.distance(v)),
+                        "mapped distance from " + u + " to " + v);
+                check(mappedComponents.connected(u, v) == expected.isReachable(v), "mapped components of " + u + " and " + v);
+            }
+            SeparationStats expectedStats = separationStats(universe, u), actualStats = separationStats(mapped, u);
+            check(actualStats.reach() == expectedStats.reach() && actualStats.distanceSum() == expectedStats.distanceSum(), "mapped separation stats of " + u);
+        }
+
+        double[] counted = countedBetweenness(universeCoStars);
+        checkBetweenness("co-star", universeCoStars, counted);
+        checkBetweenness("actor-movie", universe, counted);
+        checkBetweenness("mapped", mapped, counted);
+        CompactGraph<Integer, Object> rmat = GraphGenerator.rmat(7, 4, 1);
+        checkBetweenness("R-MAT", rmat, countedBetweenness(rmat));
+
+        //top centers on graphs with several components and many tied averages (isolated vertices, leaves)
+        CompactGraph<Integer, Object> ba = GraphGenerator.barabasiAlbert(300, 2, 1);
+        int ties = checkCenters("R-MAT", rmat) + checkCenters("Barabasi-Albert", ba) + checkCenters("co-star", universeCoStars) +
+                checkCenters("actor-movie", universe) + checkCenters("mapped", mapped) + checkCenters("tutorial", indexed);
+        check(ties > 0 && new Components(rmat).count() > 1 && universeComponents.count() > 1, "center checks cover ties and several components");
+        System.out.println("Top centers checked against full rankings, " + ties + " tied averages");
+        int bridge = 0;
+        for (int v = 1; v < numActors; v++) if (counted[v] > counted[bridge]) bridge = v;
+        System.out.println("Highest betweenness: " + universe.vertexAt(bridge) + " (" + counted[bridge] + ")");
+
+        checkDistances("co-star", universeCoStars, new DistanceIndex(universeCoStars));
+        checkDistances("actor-movie", universe, new DistanceIndex(universe));
+        DistanceIndex mappedIndex = new DistanceIndex(mapped);
+        checkDistances("mapped", mapped, mappedIndex);
+        mappedIndex.save(labelFile, stamp);
+        check(GraphSnapshot.isFresh(labelFile, stamp), "distance index fresh");
+        checkDistances("reloaded", mapped, DistanceIndex.load(labelFile));
+        checkDistances("R-MAT", rmat, new DistanceIndex(rmat));
+        System.out.println(mappedIndex + "; mapped graph, betweenness and distance labels checked");
+
+        //movies added and removed in place, against the universe rebuilt from scratch after every change
+        checkCastEdits(files, randomCast, randomOffsets, members, false, 23);
+        checkCastEdits(files, randomCast, randomOffsets, members, true, 29);
+        System.out.println("Cast changes checked against rebuilt graphs in both modes");
     }
 }
@@ -0,0 +1,246 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Versioned binary snapshot of a loaded actor universe: the actor and movie dictionaries, the casts
+ * (actor-movie CSR), and optionally the co-star CSR with its interned label table.
+ * Snapshots are read through a memory-mapped FileChannel, so loading is bulk copies of int arrays
+ * rather than parsing text.
+ *
+ * Layout (big-endian ints): MAGIC, VERSION, the stamp of the text files, the actor and movie string tables,
+ * castOffsets, castMembers, then a flag and, if set, outOffsets, outTargets, the label table and each edge's
+ * label index. A stamp is its length in bytes, then the path, size and last-modified time of each file.
+ * A string table is its count, the end offset of each string's UTF-8 bytes, then the bytes.
+ * Every int array is its length followed by its elements.
+ * @author William Toth and Christopher Long
+ */
+
+public class GraphSnapshot {
+    private static final int MAGIC = 0x4B424753; //"KBGS"
+    private static final int VERSION = 2;
+
+    private SymbolTable<String> actors;
+    private SymbolTable<String> movies;
+    private int[] castOffsets; //cast of movie m is castMembers[castOffsets[m] .. castOffsets[m+1])
+    private int[] castMembers;
+    private CompactGraph<String, int[]> coStars; //null if the snapshot was saved without the co-star graph
+
+    public GraphSnapshot(SymbolTable<String> actors, SymbolTable<String> movies, int[] castOffsets, int[] castMembers,
+                         CompactGraph<String, int[]> coStars) {
+        this.actors = actors;
+        this.movies = movies;
+        this.castOffsets = castOffsets;
+        this.castMembers = castMembers;
+        this.coStars = coStars;
+    }
+
+    public SymbolTable<String> actors() {
+        return actors;
+    }
+
+    public SymbolTable<String> movies() {
+        return movies;
+    }
+
+    public int[] castOffsets() {
+        return castOffsets;
+    }
+
+    public int[] castMembers() {
+        return castMembers;
+    }
+
+    /**
+     * The co-star graph, or null if the snapshot doesn't include one
+     * @return
+     */
+    public CompactGraph<String, int[]> coStars() {
+        return coStars;
+    }
+
+    /**
+     * Stamps files with the absolute path, size and last-modified time of each. Files built from them record the
+     * stamp right after their version; take it before reading the files, so a change made meanwhile shows up later.
+     * @param inputs
+     * @return
+     */
+    public static byte[] stamp(String... inputs) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(inputs.length);
+            for (String input : inputs) {
+                File file = new File(input).getAbsoluteFile();
+                out.writeUTF(file.getPath());
+                out.writeLong(file.length());
+                out.writeLong(file.lastModified());
+            }
+        }
+        catch (IOException e) { //only a path too long for writeUTF
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns true if a snapshot, graph file or distance index exists and records the given stamp, so the files
+     * it was built from haven't changed since
+     * @param file
+     * @param stamp null if the files are unknown
+     * @return
+     */
+    public static boolean isFresh(String file, byte[] stamp) {
+        if (stamp == null || !new File(file).isFile()) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.readLong(); //magic number and version, checked when the file is loaded
+            if (in.readInt() != stamp.length) return false;
+            byte[] recorded = new byte[stamp.length];
+            in.readFully(recorded);
+            return Arrays.equals(recorded, stamp);
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    static void writeStamp(DataOutputStream out, byte[] stamp) throws IOException {
+        out.writeInt(stamp.length);
+        out.write(stamp);
+    }
+
+    static void skipStamp(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and then moves it into place, so readers never see half a file
+     * @param path
+     * @param stamp of the text files the snapshot was built from
+     * @throws IOException
+     */
+    public void save(String path, byte[] stamp) throws IOException {
+        Path target = Paths.get(path).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeStamp(out, stamp);
+            writeStrings(out, actors);
+            writeStrings(out, movies);
+            writeInts(out, castOffsets);
+            writeInts(out, castMembers);
+            out.writeInt(coStars == null ? 0 : 1);
+            if (coStars != null) {
+                writeInts(out, coStars.outOffsets);
+                writeInts(out, coStars.outTargets);
+                //number each distinct label array once (labels are interned, so identity finds the duplicates)
+                Map<int[], Integer> labelIds = new IdentityHashMap<>();
+                List<int[]> labels = new ArrayList<>();
+                int[] edgeLabels = new int[coStars.outLabels.length];
+                for (int e = 0; e < edgeLabels.length; e++) {
+                    int[] label = coStars.outLabels[e];
+                    Integer id = labelIds.get(label);
+                    if (id == null) {
+                        id = labels.size();
+                        labelIds.put(label, id);
+                        labels.add(label);
+                    }
+                    edgeLabels[e] = id;
+                }
+                int[] labelOffsets = new int[labels.size() + 1];
+                for (int i = 0; i < labels.size(); i++) labelOffsets[i + 1] = labelOffsets[i] + labels.get(i).length;
+                int[] labelMovies = new int[labelOffsets[labels.size()]];
+                for (int i = 0; i < labels.size(); i++) System.arraycopy(labels.get(i), 0, labelMovies, labelOffsets[i], labels.get(i).length);
+                writeInts(out, labelOffsets);
+                writeInts(out, labelMovies);
+                writeInts(out, edgeLabels);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Maps a snapshot file and rebuilds the dictionaries and graphs from it
+     * @param path
+     * @param store interns the co-star labels, so later edits can share them
+     * @param withCoStars false to leave the co-star section unread, as if the snapshot had none
+     * @return
+     * @throws IOException if the file can't be read or isn't a snapshot of this version
+     */
+    public static GraphSnapshot load(String path, LabelStore store, boolean withCoStars) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Snapshot too large to map: " + path);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) throw new IOException("Not a graph snapshot: " + path);
+            int version = buffer.getInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            try {
+                skipStamp(buffer);
+                SymbolTable<String> actors = readStrings(buffer);
+                SymbolTable<String> movies = readStrings(buffer);
+                int[] castOffsets = readInts(buffer);
+                int[] castMembers = readInts(buffer);
+                CompactGraph<String, int[]> coStars = null;
+                if (withCoStars && buffer.getInt() != 0) {
+                    int[] outOffsets = readInts(buffer);
+                    int[] outTargets = readInts(buffer);
+                    int[] labelOffsets = readInts(buffer);
+                    int[] labelMovies = readInts(buffer);
+                    int[] edgeLabels = readInts(buffer);
+                    int[][] labels = new int[labelOffsets.length - 1][];
+                    for (int i = 0; i < labels.length; i++) labels[i] = store.intern(labelMovies, labelOffsets[i], labelOffsets[i + 1]);
+                    int[][] outLabels = new int[edgeLabels.length][];
+                    for (int e = 0; e < edgeLabels.length; e++) outLabels[e] = labels[edgeLabels[e]];
+                    coStars = CompactGraph.fromRows(actors, outOffsets, outTargets, outLabels);
+                }
+                return new GraphSnapshot(actors, movies, castOffsets, castMembers, coStars);
+            }
+            catch (RuntimeException e) { //truncated or corrupt file
+                throw new IOException("Corrupt graph snapshot: " + path, e);
+            }
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, SymbolTable<String> table) throws IOException {
+        byte[][] encoded = new byte[table.size()][];
+        int[] ends = new int[table.size()];
+        for (int i = 0, end = 0; i < encoded.length; i++) {
+            encoded[i] = table.symbol(i).getBytes(StandardCharsets.UTF_8);
+            end += encoded[i].length;
+            ends[i] = end;
+        }
+        writeInts(out, ends);
+        for (byte[] bytes : encoded) out.write(bytes);
+    }
+
+    private static SymbolTable<String> readStrings(ByteBuffer buffer) {
+        int[] ends = readInts(buffer);
+        SymbolTable<String> table = new SymbolTable<>();
+        int total = ends.length == 0 ? 0 : ends[ends.length - 1];
+        byte[] bytes = new byte[total];
+        buffer.get(bytes);
+        for (int i = 0, start = 0; i < ends.length; start = ends[i++]) {
+            table.intern(new String(bytes, start, ends[i] - start, StandardCharsets.UTF_8));
+        }
+        return table;
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) out.writeInt(value);
+    }
+
+    static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(values);
+        buffer.position(buffer.position() + 4 * values.length);
+        return values;
+    }
+}
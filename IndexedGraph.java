@@ -0,0 +1,27 @@
+/**
+ * A graph whose vertices are also numbered 0..numVertices()-1, so algorithms can work on int ids
+ * and only translate to vertices at the edges
+ * @author William Toth and Christopher Long
+ */
+
+public interface IndexedGraph<V,E> extends Graph<V,E> {
+	/**
+	 * Id of a vertex, or -1 if it is not in the graph
+	 */
+	public int indexOf(V v);
+
+	/**
+	 * Vertex with the given id
+	 */
+	public V vertexAt(int id);
+
+	/**
+	 * Number of out edges of the vertex with the given id
+	 */
+	public int outDegreeAt(int u);
+
+	/**
+	 * Label of the edge from u to v (by id), or null if there is no such edge
+	 */
+	public E labelBetween(int u, int v);
+}
@@ -0,0 +1,80 @@
+import java.util.Arrays;
+
+/**
+ * Interns edge labels that are sets of ids (e.g. the movies two actors share), stored as sorted int arrays.
+ * Equal sets come back as the same array, so edges with identical labels, including both directions of an
+ * undirected edge, share one copy. Interned arrays must not be modified.
+ * @author William Toth and Christopher Long
+ */
+
+public class LabelStore {
+    private int[][] table; //open addressing hash table of canonical arrays, null where empty
+    private int size; //number of distinct labels
+
+    public LabelStore() {
+        table = new int[64][];
+    }
+
+    /**
+     * Returns the canonical array equal to ids[from .. to), copying the slice only if it hasn't been seen before
+     * @param ids
+     * @param from
+     * @param to
+     * @return
+     */
+    public int[] intern(int[] ids, int from, int to) {
+        int mask = table.length - 1;
+        for (int i = hash(ids, from, to) & mask; ; i = (i + 1) & mask) {
+            int[] label = table[i];
+            if (label == null) {
+                label = Arrays.copyOfRange(ids, from, to);
+                table[i] = label;
+                if (++size * 2 > table.length) resize();
+                return label;
+            }
+            if (Arrays.equals(label, 0, label.length, ids, from, to)) return label;
+        }
+    }
+
+    /**
+     * Returns the canonical array equal to a sorted set of ids
+     * @param ids
+     * @return
+     */
+    public int[] intern(int[] ids) {
+        return intern(ids, 0, ids.length);
+    }
+
+    /**
+     * Number of distinct labels interned so far
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Doubles the table and reinserts every label
+     */
+    private void resize() {
+        int[][] old = table;
+        table = new int[old.length * 2][];
+        int mask = table.length - 1;
+        for (int[] label : old) {
+            if (label == null) continue;
+            int i = hash(label, 0, label.length) & mask;
+            while (table[i] != null) i = (i + 1) & mask;
+            table[i] = label;
+        }
+    }
+
+    private static int hash(int[] ids, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) h = 31 * h + ids[i];
+        return h ^ (h >>> 16); //spread high bits into the masked low bits
+    }
+
+    public String toString() {
+        return "Label store: " + size + " distinct labels";
+    }
+}
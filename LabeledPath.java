@@ -0,0 +1,50 @@
+import java.util.*;
+
+/**
+ * A path of vertex ids together with the label of every edge along it
+ * @author William Toth and Christopher Long
+ */
+
+public class LabeledPath<E> {
+    private int[] vertices; //ids from the start of the path to its end
+    private List<E> labels; //labels.get(i) is the label of the edge from vertices[i] to vertices[i+1]
+
+    public LabeledPath(int[] vertices, List<E> labels) {
+        this.vertices = vertices;
+        this.labels = labels;
+    }
+
+    /**
+     * Number of edges on the path
+     * @return
+     */
+    public int length() {
+        return vertices.length - 1;
+    }
+
+    /**
+     * Id of the i-th vertex on the path
+     * @param i
+     * @return
+     */
+    public int vertex(int i) {
+        return vertices[i];
+    }
+
+    /**
+     * Label of the edge between the i-th and (i+1)-th vertices
+     * @param i
+     * @return
+     */
+    public E label(int i) {
+        return labels.get(i);
+    }
+
+    public int[] vertices() {
+        return vertices.clone();
+    }
+
+    public String toString() {
+        return Arrays.toString(vertices) + " via " + labels;
+    }
+}
@@ -0,0 +1,384 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Actor-movie graph whose cast and film lists stay in a memory-mapped file, for data whose credits don't fit
+ * in the heap. Only per-vertex state is held in memory: the row offsets of every movie and actor, actor degrees
+ * and the dictionary. Like BipartiteGraph it is seen through the Graph interface as the co-star graph, with the
+ * sorted array of shared movie ids as the label of each edge, and it is read-only.
+ *
+ * The file is written by write() in two streaming passes over the movie-actors file, so building it also needs
+ * only per-vertex memory. Layout (big-endian):
+ *   header: MAGIC, VERSION, the stamp of the text files (see GraphSnapshot.stamp), numActors, numMovies (ints),
+ *           credits, castPosition, filmPosition (longs)
+ *   castOffsets (numMovies + 1 longs), filmOffsets (numActors + 1 longs), degrees (numActors ints)
+ *   castMembers (credits ints, sorted within each movie) at castPosition
+ *   films (credits ints, sorted within each actor) at filmPosition
+ * @author William Toth and Christopher Long
+ */
+
+public class MappedGraph<V> implements IndexedGraph<V, int[]> {
+	private SymbolTable<V> actors;		// actor <-> id
+	private int numMovies;
+	private long[] castOffsets;			// cast of movie m: castMembers[castOffsets[m] .. castOffsets[m+1])
+	private long[] filmOffsets;			// movies of actor a: films[filmOffsets[a] .. filmOffsets[a+1])
+	private int[] degrees;				// number of distinct co-stars of each actor
+	private IntRegion castMembers;		// actor ids, mapped from the file
+	private IntRegion films;			// movie ids, mapped from the file
+	private long numEdges;				// directed co-star edges (twice the undirected count)
+
+	private static final int MAGIC = 0x4B42474D;	// "KBGM"
+	private static final int VERSION = 2;
+	private static final int HEADER_BYTES = 44;		// all but the stamp's bytes
+
+	private MappedGraph() {
+	}
+
+	/**
+	 * Builds a graph file from a movieId|actorId file, reading it twice front to back: once to count each cast
+	 * and once to put every actor straight into its movie's place in the mapped file. Casts are then sorted in
+	 * place and the film lists and degrees worked out from them, all through the mapping.
+	 * @param castPath lines of movieId|actorId
+	 * @param actorIds actor file id -> actor id, or -1 for actors to leave out
+	 * @param numActors
+	 * @param movieIds movie file id -> movie id, or -1 for movies to leave out
+	 * @param numMovies
+	 * @param graphPath file to write
+	 * @param stamp of the text files, taken before reading them
+	 * @throws IOException if a file can't be read or written, or the movie-actors file has a malformed line
+	 */
+	public static void write(String castPath, IntUnaryOperator actorIds, int numActors, IntUnaryOperator movieIds,
+							 int numMovies, String graphPath, byte[] stamp) throws IOException {
+		long[] castOffsets = new long[numMovies + 1];
+		DataIngest.forEachPair(castPath, (movie, actor) -> {
+			int m = movieIds.applyAsInt(movie);
+			if (m >= 0 && actorIds.applyAsInt(actor) >= 0) castOffsets[m + 1]++;
+		});
+		for (int m = 0; m < numMovies; m++) castOffsets[m + 1] += castOffsets[m];
+		long slots = castOffsets[numMovies];	// credits before repeated actors are dropped
+		long headerBytes = HEADER_BYTES + stamp.length;
+		long castPosition = headerBytes + 8L * (numMovies + 1) + 8L * (numActors + 1) + 4L * numActors;
+		long filmPosition = castPosition + 4 * slots;
+
+		try (RandomAccessFile file = new RandomAccessFile(graphPath, "rw")) {
+			file.setLength(0);		// nothing stale survives, and a half-written file has no magic number
+			file.setLength(filmPosition + 4 * slots);
+			FileChannel channel = file.getChannel();
+			IntRegion cast = new IntRegion(channel, FileChannel.MapMode.READ_WRITE, castPosition, slots);
+			long[] nextCredit = Arrays.copyOf(castOffsets, numMovies);
+			DataIngest.forEachPair(castPath, (movie, actor) -> {
+				int m = movieIds.applyAsInt(movie), a = actorIds.applyAsInt(actor);
+				if (m >= 0 && a >= 0) cast.put(nextCredit[m]++, a);
+			});
+
+			// sort each cast and squeeze out repeats, compacting the casts toward the front
+			long credits = 0;
+			int[] row = new int[16];
+			for (int m = 0; m < numMovies; m++) {
+				long start = castOffsets[m];
+				int length = (int) (castOffsets[m + 1] - start);
+				if (row.length < length) row = new int[Math.max(length, row.length * 2)];
+				for (int i = 0; i < length; i++) row[i] = cast.get(start + i);
+				Arrays.sort(row, 0, length);
+				castOffsets[m] = credits;
+				for (int i = 0; i < length; i++) if (i == 0 || row[i] != row[i - 1]) cast.put(credits++, row[i]);
+			}
+			castOffsets[numMovies] = credits;
+
+			// invert the casts, scanning them in movie order so each actor's movie ids come out sorted
+			long[] filmOffsets = new long[numActors + 1];
+			for (long i = 0; i < credits; i++) filmOffsets[cast.get(i) + 1]++;
+			for (int a = 0; a < numActors; a++) filmOffsets[a + 1] += filmOffsets[a];
+			IntRegion films = new IntRegion(channel, FileChannel.MapMode.READ_WRITE, filmPosition, credits);
+			long[] nextFilm = Arrays.copyOf(filmOffsets, numActors);
+			for (int m = 0; m < numMovies; m++) {
+				for (long i = castOffsets[m]; i < castOffsets[m + 1]; i++) films.put(nextFilm[cast.get(i)]++, m);
+			}
+
+			int[] degrees = new int[numActors];
+			int[] owner = new int[numActors];		// last actor (plus one) that counted each co-star
+			for (int a = 0; a < numActors; a++) {
+				for (long f = filmOffsets[a]; f < filmOffsets[a + 1]; f++) {
+					int m = films.get(f);
+					for (long i = castOffsets[m]; i < castOffsets[m + 1]; i++) {
+						int b = cast.get(i);
+						if (b != a && owner[b] != a + 1) {
+							owner[b] = a + 1;
+							degrees[a]++;
+						}
+					}
+				}
+			}
+			cast.force();
+			films.force();
+
+			// the header goes last, so a file is only recognized once everything it describes is on disk
+			channel.position(headerBytes);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+			for (long offset : castOffsets) out.writeLong(offset);
+			for (long offset : filmOffsets) out.writeLong(offset);
+			for (int degree : degrees) out.writeInt(degree);
+			out.flush();
+			channel.position(0);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			GraphSnapshot.writeStamp(out, stamp);
+			out.writeInt(numActors);
+			out.writeInt(numMovies);
+			out.writeLong(credits);
+			out.writeLong(castPosition);
+			out.writeLong(filmPosition);
+			out.flush();
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Maps a file written by write(), reading only the offsets and degrees into memory
+	 * @param path
+	 * @param actors dictionary the file was written with
+	 * @param <V>
+	 * @return
+	 * @throws IOException if the file can't be read, isn't a graph file, or doesn't match the dictionary
+	 */
+	public static <V> MappedGraph<V> open(String path, SymbolTable<V> actors) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+			if (in.readInt() != MAGIC) throw new IOException("Not a graph file: " + path);
+			int version = in.readInt();
+			if (version != VERSION) throw new IOException("Unsupported graph file version " + version + ": " + path);
+			in.skipNBytes(in.readInt());
+			int numActors = in.readInt(), numMovies = in.readInt();
+			long credits = in.readLong(), castPosition = in.readLong(), filmPosition = in.readLong();
+			if (numActors != actors.size()) {
+				throw new IOException("Graph file has " + numActors + " actors, dictionary has " + actors.size() + ": " + path);
+			}
+			if (numMovies < 0 || credits < 0 || channel.size() < filmPosition + 4 * credits) {
+				throw new IOException("Truncated graph file: " + path);
+			}
+			MappedGraph<V> g = new MappedGraph<>();
+			g.actors = actors;
+			g.numMovies = numMovies;
+			g.castOffsets = new long[numMovies + 1];
+			for (int m = 0; m <= numMovies; m++) g.castOffsets[m] = in.readLong();
+			g.filmOffsets = new long[numActors + 1];
+			for (int a = 0; a <= numActors; a++) g.filmOffsets[a] = in.readLong();
+			g.degrees = new int[numActors];
+			for (int a = 0; a < numActors; a++) {
+				g.degrees[a] = in.readInt();
+				g.numEdges += g.degrees[a];
+			}
+			g.castMembers = new IntRegion(channel, FileChannel.MapMode.READ_ONLY, castPosition, credits);
+			g.films = new IntRegion(channel, FileChannel.MapMode.READ_ONLY, filmPosition, credits);
+			return g;
+		}
+	}
+
+	public int numMovies() {
+		return numMovies;
+	}
+
+	/**
+	 * Number of edges in the actor-movie graph (one per cast credit), as opposed to co-star edges
+	 * @return
+	 */
+	public long numCredits() {
+		return castOffsets[numMovies];
+	}
+
+	long castStart(int m) {
+		return castOffsets[m];
+	}
+
+	long castEnd(int m) {
+		return castOffsets[m + 1];
+	}
+
+	int castMember(long i) {
+		return castMembers.get(i);
+	}
+
+	long filmStart(int a) {
+		return filmOffsets[a];
+	}
+
+	long filmEnd(int a) {
+		return filmOffsets[a + 1];
+	}
+
+	int film(long f) {
+		return films.get(f);
+	}
+
+	public int indexOf(V v) {
+		return actors.indexOf(v);
+	}
+
+	public V vertexAt(int id) {
+		return actors.symbol(id);
+	}
+
+	public int outDegreeAt(int u) {
+		return degrees[u];
+	}
+
+	/**
+	 * Sorted ids of the movies both actors appeared in, or null if they never appeared together
+	 */
+	public int[] labelBetween(int u, int v) {
+		if (u == v) return null;
+		int[] shared = new int[(int) Math.min(filmOffsets[u + 1] - filmOffsets[u], filmOffsets[v + 1] - filmOffsets[v])];
+		int count = 0;
+		long i = filmOffsets[u], j = filmOffsets[v];
+		while (i < filmOffsets[u + 1] && j < filmOffsets[v + 1]) {
+			int a = films.get(i), b = films.get(j);
+			if (a < b) i++;
+			else if (a > b) j++;
+			else {
+				shared[count++] = a;
+				i++;
+				j++;
+			}
+		}
+		return count == 0 ? null : Arrays.copyOf(shared, count);
+	}
+
+	/**
+	 * Ids of the distinct co-stars of an actor, in increasing order
+	 * @param u
+	 * @return
+	 */
+	public int[] coStars(int u) {
+		//every cast member of every film, sorted so repeats and u itself sit together and can be dropped
+		int size = 0;
+		for (long f = filmOffsets[u]; f < filmOffsets[u + 1]; f++) {
+			int m = films.get(f);
+			size += (int) (castOffsets[m + 1] - castOffsets[m]);
+		}
+		int[] members = new int[size];
+		int k = 0;
+		for (long f = filmOffsets[u]; f < filmOffsets[u + 1]; f++) {
+			int m = films.get(f);
+			for (long i = castOffsets[m]; i < castOffsets[m + 1]; i++) members[k++] = castMembers.get(i);
+		}
+		Arrays.sort(members);
+		int[] result = new int[degrees[u]];
+		k = 0;
+		for (int i = 0; i < members.length; i++) {
+			if (members[i] != u && (i == 0 || members[i] != members[i - 1])) result[k++] = members[i];
+		}
+		return result;
+	}
+
+	public int numVertices() {
+		return actors.size();
+	}
+
+	public int numEdges() {
+		return (int) Math.min(numEdges, Integer.MAX_VALUE);
+	}
+
+	public Iterable<V> vertices() {
+		return actors.symbols();
+	}
+
+	public boolean hasVertex(V v) {
+		return actors.contains(v);
+	}
+
+	public int outDegree(V v) {
+		return degrees[actors.indexOf(v)];
+	}
+
+	public int inDegree(V v) {
+		return outDegree(v);	// co-starring is symmetric
+	}
+
+	public Iterable<V> outNeighbors(V v) {
+		List<V> neighbors = new ArrayList<V>();
+		for (int b : coStars(actors.indexOf(v))) neighbors.add(actors.symbol(b));
+		return neighbors;
+	}
+
+	public Iterable<V> inNeighbors(V v) {
+		return outNeighbors(v);
+	}
+
+	public boolean hasEdge(V u, V v) {
+		int a = actors.indexOf(u), b = actors.indexOf(v);
+		return a >= 0 && b >= 0 && labelBetween(a, b) != null;
+	}
+
+	public int[] getLabel(V u, V v) {
+		int a = actors.indexOf(u), b = actors.indexOf(v);
+		if (a < 0 || b < 0) return null;
+		return labelBetween(a, b);
+	}
+
+	public void insertVertex(V v) {
+		throw new UnsupportedOperationException("MappedGraph is read-only");
+	}
+
+	public void insertDirected(V u, V v, int[] e) {
+		throw new UnsupportedOperationException("MappedGraph is read-only");
+	}
+
+	public void insertUndirected(V u, V v, int[] e) {
+		throw new UnsupportedOperationException("MappedGraph is read-only");
+	}
+
+	public void removeVertex(V v) {
+		throw new UnsupportedOperationException("MappedGraph is read-only");
+	}
+
+	public void removeDirected(V u, V v) {
+		throw new UnsupportedOperationException("MappedGraph is read-only");
+	}
+
+	public void removeUndirected(V u, V v) {
+		throw new UnsupportedOperationException("MappedGraph is read-only");
+	}
+
+	/**
+	 * Returns a string representation of the actor and movie counts.
+	 */
+	public String toString() {
+		return "Actors: " + actors.size() + ", movies: " + numMovies + ", credits: " + numCredits() +
+				", co-star edges: " + numEdges + " (mapped)";
+	}
+
+	/**
+	 * Ints stored from some position of a file, mapped a segment at a time since one mapping holds at most 2GB
+	 */
+	private static class IntRegion {
+		private static final int SEGMENT_SHIFT = 28;	// 2^28 ints (1GB) per segment
+		private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+		private final MappedByteBuffer[] segments;
+
+		IntRegion(FileChannel channel, FileChannel.MapMode mode, long position, long length) throws IOException {
+			segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for (int s = 0; s < segments.length; s++) {
+				long first = (long) s << SEGMENT_SHIFT;
+				segments[s] = channel.map(mode, position + 4 * first, 4 * Math.min(SEGMENT_MASK + 1, length - first));
+			}
+		}
+
+		int get(long i) {
+			return segments[(int) (i >>> SEGMENT_SHIFT)].getInt((int) (i & SEGMENT_MASK) << 2);
+		}
+
+		void put(long i, int value) {
+			segments[(int) (i >>> SEGMENT_SHIFT)].putInt((int) (i & SEGMENT_MASK) << 2, value);
+		}
+
+		void force() {
+			for (MappedByteBuffer segment : segments) segment.force();
+		}
+	}
+}
@@ -0,0 +1,274 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide timings and counts for traversals, commands and graph building, reported as text and through JMX.
+ * Off by default (on with -Dgame.metrics=true, enable(true), or the JMX Enabled attribute). When off, start()
+ * returns 0 and every recording call returns on its first check, so instrumented code pays one volatile read
+ * per traversal or command, never per vertex or edge.
+ *
+ * Timers keep a log2 histogram of nanoseconds (bucket b holds latencies in [2^b, 2^(b+1)) ns), so percentiles
+ * are reported to within a factor of two. Traversals also count the vertices they reach and the edges of those
+ * vertices, from which edges per second (the Graph500 measure) follows.
+ * @author William Toth and Christopher Long
+ */
+
+public class Metrics {
+    private static volatile boolean enabled = Boolean.getBoolean("game.metrics");
+    private static final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService dumper; //runs the periodic dump, created on first use
+    private static ScheduledFuture<?> dump; //the periodic dump, if one is running
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void enable(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Start time of something to be timed
+     * @return System.nanoTime(), or 0 when metrics are off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since a start() under a timer's name
+     * @param name
+     * @param start value returned by start(); 0 records nothing
+     */
+    public static void stop(String name, long start) {
+        if (start == 0) return;
+        timers.computeIfAbsent(name, key -> new Timer()).record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records a traversal: its time, and how many vertices it reached and edges those vertices have. Callers
+     * check that start() gave them a time, then take the elapsed time before counting edges.
+     * @param name
+     * @param elapsed nanoseconds the traversal took
+     * @param vertices
+     * @param edges
+     */
+    public static void traversal(String name, long elapsed, long vertices, long edges) {
+        if (!enabled) return;
+        timers.computeIfAbsent(name, key -> new Timer()).record(elapsed);
+        count(name + ".vertices", vertices);
+        count(name + ".edges", edges);
+    }
+
+    /**
+     * Adds to a counter when metrics are on
+     * @param name
+     * @param amount
+     */
+    public static void count(String name, long amount) {
+        if (!enabled) return;
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Reports a value read when metrics are dumped, replacing any gauge of the same name
+     * @param name
+     * @param value
+     */
+    public static void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Forgets every timing and count (gauges stay)
+     */
+    public static void reset() {
+        timers.clear();
+        counters.clear();
+    }
+
+    /**
+     * Text report of every timer, counter and gauge, sorted by name
+     * @return
+     */
+    public static String dump() {
+        StringBuilder text = new StringBuilder("Metrics (" + (enabled ? "on" : "off") + ")\n");
+        for (Map.Entry<String, Timer> entry : new TreeMap<>(timers).entrySet()) {
+            String name = entry.getKey();
+            Timer timer = entry.getValue();
+            text.append(String.format("  %-28s count %d, mean %.3f ms, p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms",
+                    name, timer.count(), timer.mean() / 1e6, timer.percentile(0.5) / 1e6, timer.percentile(0.9) / 1e6,
+                    timer.percentile(0.99) / 1e6, timer.max() / 1e6));
+            LongAdder edges = counters.get(name + ".edges");
+            if (edges != null && timer.total() > 0) text.append(String.format(", %.3g edges/s", edges.sum() * 1e9 / timer.total()));
+            text.append('\n');
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            text.append(String.format("  %-28s %d%n", entry.getKey(), entry.getValue().sum()));
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            text.append(String.format("  %-28s %.4g%n", entry.getKey(), entry.getValue().getAsDouble()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Prints dump() every period until stopDump(), from a daemon thread
+     * @param out
+     * @param period
+     * @param unit
+     */
+    public static synchronized void startDump(PrintStream out, long period, TimeUnit unit) {
+        stopDump();
+        if (dumper == null) {
+            dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        dump = dumper.scheduleAtFixedRate(() -> out.print(dump()), period, period, unit);
+    }
+
+    public static synchronized void stopDump() {
+        if (dump != null) dump.cancel(false);
+        dump = null;
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server as game:type=Metrics, if they aren't already
+     * @throws JMException
+     */
+    public static synchronized void exportToJmx() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("game:type=Metrics");
+        if (!server.isRegistered(name)) server.registerMBean(new Bean(), name);
+    }
+
+    /**
+     * JMX view of the metrics
+     */
+    public interface MetricsMXBean {
+        boolean isEnabled();
+        void setEnabled(boolean on);
+        Map<String, Long> getCounts(); //timer counts and counters
+        Map<String, Double> getMeanMillis(); //mean time of each timer
+        Map<String, Double> getP99Millis(); //99th percentile time of each timer
+        Map<String, Double> getGauges();
+        String getReport();
+        void reset();
+    }
+
+    private static class Bean implements MetricsMXBean {
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        public void setEnabled(boolean on) {
+            Metrics.enable(on);
+        }
+
+        public Map<String, Long> getCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            timers.forEach((name, timer) -> counts.put(name, timer.count()));
+            counters.forEach((name, counter) -> counts.put(name, counter.sum()));
+            return counts;
+        }
+
+        public Map<String, Double> getMeanMillis() {
+            Map<String, Double> means = new TreeMap<>();
+            timers.forEach((name, timer) -> means.put(name, timer.mean() / 1e6));
+            return means;
+        }
+
+        public Map<String, Double> getP99Millis() {
+            Map<String, Double> tails = new TreeMap<>();
+            timers.forEach((name, timer) -> tails.put(name, timer.percentile(0.99) / 1e6));
+            return tails;
+        }
+
+        public Map<String, Double> getGauges() {
+            Map<String, Double> values = new TreeMap<>();
+            gauges.forEach((name, gauge) -> values.put(name, gauge.getAsDouble()));
+            return values;
+        }
+
+        public String getReport() {
+            return dump();
+        }
+
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+
+    /**
+     * Latency histogram with one bucket per power of two nanoseconds
+     */
+    private static class Timer {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder total = new LongAdder();
+        private volatile long max;
+
+        void record(long nanos) {
+            nanos = Math.max(nanos, 1);
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos));
+            total.add(nanos);
+            if (nanos > max) {
+                synchronized (this) {
+                    if (nanos > max) max = nanos;
+                }
+            }
+        }
+
+        long count() {
+            long count = 0;
+            for (int b = 0; b < 64; b++) count += buckets.get(b);
+            return count;
+        }
+
+        long total() {
+            return total.sum();
+        }
+
+        long max() {
+            return max;
+        }
+
+        double mean() {
+            long count = count();
+            return count == 0 ? 0 : (double) total() / count;
+        }
+
+        /**
+         * Upper end of the bucket holding the p-th fraction of recorded times (capped at the maximum)
+         */
+        long percentile(double p) {
+            long count = count(), rank = (long) Math.ceil(p * count), seen = 0;
+            if (count == 0) return 0;
+            for (int b = 0; b < 64; b++) {
+                seen += buckets.get(b);
+                if (seen >= rank) return Math.min(max, b >= 62 ? Long.MAX_VALUE : (2L << b) - 1);
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.Arrays;
+
+/**
+ * Summary of the distances from one source, without the tree: how many vertices it reaches, the sum and
+ * greatest of their distances, and how many sit at each distance
+ * @author William Toth and Christopher Long
+ */
+
+public class SeparationStats {
+    private int source; //id of the source
+    private int[] levelSizes; //number of vertices at each distance, levelSizes[0] is the source
+    private int reach; //number of vertices reached, not counting the source
+    private long distanceSum; //sum of the distances to the vertices reached
+
+    /**
+     * Summarizes distances counted level by level
+     * @param source
+     * @param levelSizes number of vertices at each distance, starting with 1 for the source; kept, not copied
+     */
+    SeparationStats(int source, int[] levelSizes) {
+        this.source = source;
+        this.levelSizes = levelSizes;
+        for (int d = 1; d < levelSizes.length; d++) {
+            reach += levelSizes[d];
+            distanceSum += (long) d * levelSizes[d];
+        }
+    }
+
+    /**
+     * Summarizes a shortest path tree
+     * @param tree
+     */
+    public SeparationStats(ShortestPathTree tree) {
+        this(tree.source(), levelSizes(tree));
+    }
+
+    private static int[] levelSizes(ShortestPathTree tree) {
+        int[] sizes = new int[tree.levels()];
+        for (int d = 0; d < sizes.length; d++) sizes[d] = tree.levelSize(d);
+        return sizes;
+    }
+
+    public int source() {
+        return source;
+    }
+
+    /**
+     * Number of vertices reached, not counting the source
+     * @return
+     */
+    public int reach() {
+        return reach;
+    }
+
+    /**
+     * Sum of the distances from the source to every vertex it reaches
+     * @return
+     */
+    public long distanceSum() {
+        return distanceSum;
+    }
+
+    /**
+     * Greatest distance from the source to a vertex it reaches
+     * @return
+     */
+    public int eccentricity() {
+        return levelSizes.length - 1;
+    }
+
+    /**
+     * Number of vertices at a given distance from the source
+     * @param d
+     * @return
+     */
+    public int levelSize(int d) {
+        return d < 0 || d >= levelSizes.length ? 0 : levelSizes[d];
+    }
+
+    /**
+     * Number of vertices at each distance from the source, starting with the source itself
+     * @return
+     */
+    public int[] levelSizes() {
+        return Arrays.copyOf(levelSizes, levelSizes.length);
+    }
+
+    /**
+     * Average distance from the source to the vertices it reaches, 0 if it reaches none
+     * @return
+     */
+    public double averageSeparation() {
+        return reach == 0 ? 0 : (double) distanceSum / reach;
+    }
+
+    public String toString() {
+        return "Separation from " + source + ": reaches " + reach + ", average " + averageSeparation() +
+                ", eccentricity " + eccentricity() + ", levels " + Arrays.toString(levelSizes);
+    }
+}
@@ -0,0 +1,196 @@
+import java.util.Arrays;
+
+/**
+ * Result of a breadth first search over vertex ids: the parent and distance of every vertex,
+ * plus the reached vertices grouped by distance, so the vertices at a range of distances are one slice
+ * @author William Toth and Christopher Long
+ */
+
+public class ShortestPathTree {
+    private int source; //id of the root
+    private int[] parent; //parent id of each vertex (the root is its own parent), -1 if unreachable
+    private int[] distance; //number of edges from the root, -1 if unreachable
+    private int[] order; //reached vertices in discovery order, then by distance and id once indexLevels() has run
+    private int reached; //number of entries of order in use (includes the root)
+    private int[] levelStart; //vertices at distance d are order[levelStart[d] .. levelStart[d+1]), null until indexed
+
+    /**
+     * Creates a tree holding only its root; bfs fills in the rest
+     * @param numVertices
+     * @param source
+     */
+    public ShortestPathTree(int numVertices, int source) {
+        this.source = source;
+        parent = new int[numVertices];
+        distance = new int[numVertices];
+        order = new int[numVertices];
+        Arrays.fill(parent, -1);
+        Arrays.fill(distance, -1);
+        parent[source] = source;
+        distance[source] = 0;
+        order[reached++] = source;
+    }
+
+    /**
+     * Records that v was discovered from u
+     * @param u
+     * @param v
+     */
+    void discover(int u, int v) {
+        parent[v] = u;
+        distance[v] = distance[u] + 1;
+        order[reached++] = v;
+    }
+
+    /**
+     * Makes room for vertices added to the graph since the tree was built; they start out unreachable
+     * @param numVertices
+     */
+    void grow(int numVertices) {
+        int old = parent.length;
+        if (numVertices <= old) return;
+        parent = Arrays.copyOf(parent, numVertices);
+        distance = Arrays.copyOf(distance, numVertices);
+        order = Arrays.copyOf(order, numVertices);
+        Arrays.fill(parent, old, numVertices, -1);
+        Arrays.fill(distance, old, numVertices, -1);
+    }
+
+    /**
+     * Hangs v below u, one edge further from the root than u; the level index is left stale until indexLevels()
+     * @param v
+     * @param u
+     */
+    void setParent(int v, int u) {
+        parent[v] = u;
+        distance[v] = distance[u] + 1;
+    }
+
+    /**
+     * Marks v unreachable; the level index is left stale until indexLevels()
+     * @param v
+     */
+    void detach(int v) {
+        parent[v] = -1;
+        distance[v] = -1;
+    }
+
+    /**
+     * Lays out the reached vertices level by level, ids increasing within a level, with a counting sort on distance,
+     * and records where each level starts. Run once the search is done, and again after setParent or detach.
+     */
+    void indexLevels() {
+        int levels = 0;
+        for (int d : distance) levels = Math.max(levels, d + 1);
+        int[] start = new int[levels + 1];
+        for (int d : distance) if (d >= 0) start[d + 1]++;
+        for (int d = 0; d < levels; d++) start[d + 1] += start[d];
+        reached = start[levels];
+        int[] next = Arrays.copyOf(start, levels);
+        for (int v = 0; v < distance.length; v++) if (distance[v] >= 0) order[next[distance[v]]++] = v;
+        levelStart = start;
+    }
+
+    public int source() {
+        return source;
+    }
+
+    /**
+     * Number of vertices in the graph the tree was built over
+     * @return
+     */
+    public int numVertices() {
+        return parent.length;
+    }
+
+    /**
+     * Number of vertices reached, including the root
+     * @return
+     */
+    public int reachCount() {
+        return reached;
+    }
+
+    public boolean isReachable(int v) {
+        return parent[v] != -1;
+    }
+
+    /**
+     * Number of edges between the root and v, or -1 if v is unreachable
+     * @param v
+     * @return
+     */
+    public int distance(int v) {
+        return distance[v];
+    }
+
+    /**
+     * Id of the vertex v was discovered from, v itself for the root, -1 if unreachable
+     * @param v
+     * @return
+     */
+    public int parent(int v) {
+        return parent[v];
+    }
+
+    /**
+     * The i-th vertex reached, in order of distance from the root
+     * @param i
+     * @return
+     */
+    public int reachedVertex(int i) {
+        return order[i];
+    }
+
+    /**
+     * Number of distinct distances from the root, i.e. one more than the greatest distance
+     * @return
+     */
+    public int levels() {
+        if (levelStart == null) indexLevels(); //a tree filled in by hand rather than by bfs
+        return levelStart.length - 1;
+    }
+
+    /**
+     * Number of vertices at a given distance from the root
+     * @param d
+     * @return
+     */
+    public int levelSize(int d) {
+        return d < 0 || d >= levels() ? 0 : levelStart[d + 1] - levelStart[d];
+    }
+
+    /**
+     * Ids of the vertices whose distance from the root is between low and high inclusive, by increasing distance
+     * and then id
+     * @param low
+     * @param high
+     * @return
+     */
+    public int[] verticesBetween(int low, int high) {
+        low = Math.max(low, 0);
+        high = Math.min(high, levels() - 1);
+        if (low > high) return new int[0];
+        return Arrays.copyOfRange(order, levelStart[low], levelStart[high + 1]);
+    }
+
+    /**
+     * Rough number of bytes of heap the tree occupies
+     * @return
+     */
+    public long estimatedBytes() {
+        return 3L * (16 + 4L * parent.length) + 16 + 4L * (levelStart == null ? 0 : levelStart.length) + 40;
+    }
+
+    /**
+     * Path of ids from the root to v
+     * @param v
+     * @return ids from root to v, empty if v is unreachable
+     */
+    public int[] path(int v) {
+        if (parent[v] == -1) return new int[0];
+        int[] path = new int[distance[v] + 1];
+        for (int i = distance[v], current = v; i >= 0; i--, current = parent[current]) path[i] = current;
+        return path;
+    }
+}
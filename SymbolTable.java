@@ -0,0 +1,79 @@
+import java.util.*;
+
+/**
+ * Interns symbols (actor names, movie titles, ...) as dense int ids 0..size-1
+ * so that graphs and traversals can work on primitive ids
+ * @author William Toth and Christopher Long
+ */
+
+public class SymbolTable<T> {
+    private Map<T, Integer> ids; //symbol -> id
+    private List<T> symbols; //id -> symbol
+
+    /**
+     * Default constructor, creating an empty table
+     */
+    public SymbolTable() {
+        ids = new HashMap<>();
+        symbols = new ArrayList<>();
+    }
+
+    /**
+     * Returns the id of a symbol, assigning the next free id if it hasn't been seen before
+     * @param symbol
+     * @return
+     */
+    public int intern(T symbol) {
+        Integer id = ids.get(symbol);
+        if (id == null) {
+            id = symbols.size();
+            ids.put(symbol, id);
+            symbols.add(symbol);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of a symbol, or -1 if it isn't in the table
+     * @param symbol
+     * @return
+     */
+    public int indexOf(T symbol) {
+        Integer id = ids.get(symbol);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the symbol with the given id
+     * @param id
+     * @return
+     */
+    public T symbol(int id) {
+        return symbols.get(id);
+    }
+
+    /**
+     * Returns true if the symbol has an id
+     * @param symbol
+     * @return
+     */
+    public boolean contains(T symbol) {
+        return ids.containsKey(symbol);
+    }
+
+    public int size() {
+        return symbols.size();
+    }
+
+    /**
+     * Read-only view of all symbols in id order
+     * @return
+     */
+    public List<T> symbols() {
+        return Collections.unmodifiableList(symbols);
+    }
+
+    public String toString() {
+        return symbols.toString();
+    }
+}
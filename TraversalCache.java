@@ -0,0 +1,102 @@
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded cache of breadth first search results keyed by source vertex id.
+ * Least recently used trees are evicted once their estimated size passes a memory budget.
+ * Must be invalidated whenever the graph the trees were built over changes.
+ * @author William Toth and Christopher Long
+ */
+
+public class TraversalCache {
+    private LinkedHashMap<Integer, ShortestPathTree> trees; //source -> tree, in least to most recently used order
+    private long budgetBytes; //upper bound on the estimated size of all cached trees
+    private long usedBytes; //estimated size of all cached trees
+    private long hits, misses, evictions;
+
+    /**
+     * Creates an empty cache
+     * @param budgetBytes memory budget; the most recent tree is always kept even if it alone is over budget
+     */
+    public TraversalCache(long budgetBytes) {
+        if (budgetBytes < 0) throw new IllegalArgumentException("Negative cache budget: " + budgetBytes);
+        this.budgetBytes = budgetBytes;
+        trees = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached tree for a source, or null if there isn't one
+     * @param source
+     * @return
+     */
+    public synchronized ShortestPathTree get(int source) {
+        ShortestPathTree tree = trees.get(source);
+        if (tree == null) misses++;
+        else hits++;
+        return tree;
+    }
+
+    /**
+     * Returns the cached tree for a source, running the traversal and caching its result on a miss
+     * @param source
+     * @param traversal
+     * @return
+     */
+    public ShortestPathTree get(int source, IntFunction<ShortestPathTree> traversal) {
+        ShortestPathTree tree = get(source);
+        if (tree == null) {
+            tree = traversal.apply(source); //traverse outside the lock so other sources can still be looked up
+            put(tree);
+        }
+        return tree;
+    }
+
+    /**
+     * Adds a tree, evicting least recently used trees until the cache is back within budget
+     * @param tree
+     */
+    public synchronized void put(ShortestPathTree tree) {
+        ShortestPathTree old = trees.put(tree.source(), tree);
+        if (old != null) usedBytes -= old.estimatedBytes();
+        usedBytes += tree.estimatedBytes();
+        Iterator<ShortestPathTree> eldest = trees.values().iterator();
+        while (usedBytes > budgetBytes && trees.size() > 1) {
+            usedBytes -= eldest.next().estimatedBytes();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every cached tree; call after the graph is mutated
+     */
+    public synchronized void invalidate() {
+        trees.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized int size() {
+        return trees.size();
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized String toString() {
+        return "Traversal cache: " + trees.size() + " trees, " + usedBytes + "/" + budgetBytes + " bytes, " +
+                hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+}
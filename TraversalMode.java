@@ -0,0 +1,14 @@
+/**
+ * Strategies GraphLibrary.bfs can use to grow a breadth first search; all give the same distances
+ * @author William Toth and Christopher Long
+ */
+
+public enum TraversalMode {
+    /** Every frontier vertex scans its out neighbors for undiscovered vertices */
+    TOP_DOWN,
+    /**
+     * Switches to bottom-up steps (every undiscovered vertex looks for a parent in the frontier)
+     * while the frontier is large, and back to top-down steps once it shrinks again
+     */
+    DIRECTION_OPTIMIZING
+}
@@ -0,0 +1,119 @@
+import java.io.*;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * The operations the JMH benchmarks in jmh/benchmarks measure, on the movie data and on synthetic scale-free
+ * graphs. JMH won't generate benchmarks in the default package and a named package can't import from it, so the
+ * benchmarks look these methods up by name and run the operations they return. Each operation is passed the
+ * number of the run so it can vary its input, and returns its result for the benchmark to sink.
+ * @author William Toth and Christopher Long
+ */
+
+public class BenchmarkWorkloads {
+    /**
+     * Single-source searches, path queries, separation statistics and top centers on one graph, from
+     * pseudo-random sources
+     * @param graph "co-stars" or "actor-movie" for the movie data, "R-MAT" or "Barabasi-Albert" for a synthetic graph
+     * @param data directory holding actors.txt, movies.txt and movie-actors.txt
+     * @param scale log2 of the number of vertices of a synthetic graph
+     * @return operations keyed by "bfs", "bfs top down", "separation stats", "bidirectional path" and "top centers"
+     * @throws IOException if the movie data can't be read
+     */
+    public static Map<String, IntFunction<?>> traversals(String graph, String data, int scale) throws IOException {
+        IndexedGraph<?,?> g;
+        if (graph.equals("R-MAT")) g = GraphGenerator.rmat(scale, 16, 1);
+        else if (graph.equals("Barabasi-Albert")) g = GraphGenerator.barabasiAlbert(1 << scale, 8, 1);
+        else {
+            BipartiteGraph<String> actorMovie = actorMovie(data);
+            if (graph.equals("actor-movie")) g = actorMovie;
+            else if (graph.equals("co-stars")) g = actorMovie.project(new LabelStore());
+            else throw new IllegalArgumentException("Unknown graph: " + graph);
+        }
+        int[] vertices = randomVertices(g.numVertices(), 1024, 7);
+        Map<String, IntFunction<?>> operations = new HashMap<>();
+        operations.put("bfs", i -> GraphLibrary.bfs(g, vertices[i % vertices.length]));
+        operations.put("bfs top down", i -> GraphLibrary.bfs(g, vertices[i % vertices.length], TraversalMode.TOP_DOWN));
+        operations.put("separation stats", i -> GraphLibrary.separationStats(g, vertices[i % vertices.length]));
+        operations.put("bidirectional path", i -> GraphLibrary.bidirectionalPath(g, vertices[i % vertices.length], vertices[(i + 1) % vertices.length]));
+        operations.put("top centers", i -> GraphLibrary.topCenters(g, 10, false));
+        return operations;
+    }
+
+    /**
+     * Construction from the text files: parsing them, expanding casts into co-star edges, and a whole Game
+     * @param data directory holding actors.txt, movies.txt and movie-actors.txt
+     * @return operations keyed by "ingest", "project" and "game"
+     * @throws IOException if the movie data can't be read
+     */
+    public static Map<String, IntFunction<?>> builds(String data) throws IOException {
+        String[] files = files(data);
+        BipartiteGraph<String> actorMovie = actorMovie(data);
+        Map<String, IntFunction<?>> operations = new HashMap<>();
+        operations.put("ingest", i -> {
+            try {
+                return DataIngest.load(files[0], files[1], files[2]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        operations.put("project", i -> actorMovie.project(new LabelStore()));
+        operations.put("game", i -> new Game(files[0], files[1], files[2]));
+        return operations;
+    }
+
+    /**
+     * Game queries, the sketch estimate of every actor's separation, and the Graph interface algorithms on a hash
+     * map copy of the co-star graph
+     * @param data directory holding actors.txt, movies.txt and movie-actors.txt
+     * @return operations keyed by "best centers", "worst centers", "approximate separation", "path to center",
+     * "separation range" and "map graph search"
+     * @throws IOException if the movie data can't be read
+     */
+    public static Map<String, IntFunction<?>> game(String data) throws IOException {
+        String[] files = files(data);
+        Game game = new Game(files[0], files[1], files[2]);
+        CompactGraph<String, int[]> coStars = actorMovie(data).project(new LabelStore());
+        Graph<String, int[]> mapGraph = new AdjacencyMapGraph<>();
+        for (String actor : coStars.vertices()) mapGraph.insertVertex(actor);
+        for (String actor : coStars.vertices()) {
+            for (String coStar : coStars.outNeighbors(actor)) mapGraph.insertDirected(actor, coStar, coStars.getLabel(actor, coStar));
+        }
+        int[] sources = randomVertices(coStars.numVertices(), 1024, 11), named = randomVertices(coStars.numVertices(), 1024, 13);
+        double[] reach = new double[coStars.numVertices()], sums = new double[coStars.numVertices()];
+        Map<String, IntFunction<?>> operations = new HashMap<>();
+        operations.put("best centers", i -> game.centers(-10));
+        operations.put("worst centers", i -> game.centers(10));
+        operations.put("approximate separation", i -> {
+            GraphLibrary.approximateSeparation(coStars, 0.05, reach, sums);
+            return sums;
+        });
+        operations.put("path to center", i -> game.pathToCenter(named[i % named.length], game.center()));
+        operations.put("separation range", i -> game.separationRange(game.center(), 2, 3));
+        operations.put("map graph search", i -> {
+            String source = coStars.vertexAt(sources[i % sources.length]);
+            Graph<String, int[]> tree = GraphLibrary.bfs(mapGraph, source);
+            String target = coStars.vertexAt(sources[(i + 1) % sources.length]);
+            List<String> path = tree.hasVertex(target) ? GraphLibrary.getPath(tree, target) : null;
+            return GraphLibrary.averageSeparation(tree, source) + (path == null ? 0 : path.size());
+        });
+        return operations;
+    }
+
+    private static String[] files(String data) {
+        return new String[] {data + "/actors.txt", data + "/movies.txt", data + "/movie-actors.txt"};
+    }
+
+    private static BipartiteGraph<String> actorMovie(String data) throws IOException {
+        String[] files = files(data);
+        DataIngest ingest = DataIngest.load(files[0], files[1], files[2]);
+        return new BipartiteGraph<>(ingest.actors(), ingest.movies().size(), ingest.castOffsets(), ingest.castMembers());
+    }
+
+    private static int[] randomVertices(int n, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] vertices = new int[count];
+        for (int i = 0; i < count; i++) vertices[i] = random.nextInt(n);
+        return vertices;
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Construction from the bundled movie data: parsing the text files, expanding casts into co-star edges, and
+ * building a whole Game. Each run is timed on its own, since one takes too long to repeat in a loop.
+ * @author William Toth and Christopher Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BuildBenchmarks {
+    @Param("PS4")
+    public String data; //directory holding the movie data
+
+    private IntFunction<?> ingest, project, game;
+    private int run;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        Map<String, IntFunction<?>> operations = Workloads.of("builds", data);
+        ingest = operations.get("ingest");
+        project = operations.get("project");
+        game = operations.get("game");
+    }
+
+    @Benchmark
+    public void ingest(Blackhole sink) {
+        sink.consume(ingest.apply(run++));
+    }
+
+    @Benchmark
+    public void project(Blackhole sink) {
+        sink.consume(project.apply(run++));
+    }
+
+    @Benchmark
+    public void game(Blackhole sink) {
+        sink.consume(game.apply(run++));
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The Game queries on the movie data, the sketch estimate of every actor's separation, and the Graph interface
+ * algorithms on a hash map copy of the co-star graph. The 'c' rankings and the estimate are timed one run at a
+ * time; the rest are sampled.
+ * @author William Toth and Christopher Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmarks {
+    @Param("PS4")
+    public String data; //directory holding the movie data
+
+    private IntFunction<?> bestCenters, worstCenters, approximateSeparation, pathToCenter, separationRange, mapGraphSearch;
+    private int run;
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        Map<String, IntFunction<?>> operations = Workloads.of("game", data);
+        bestCenters = operations.get("best centers");
+        worstCenters = operations.get("worst centers");
+        approximateSeparation = operations.get("approximate separation");
+        pathToCenter = operations.get("path to center");
+        separationRange = operations.get("separation range");
+        mapGraphSearch = operations.get("map graph search");
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public void bestCenters(Blackhole sink) {
+        sink.consume(bestCenters.apply(run++));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public void worstCenters(Blackhole sink) {
+        sink.consume(worstCenters.apply(run++));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public void approximateSeparation(Blackhole sink) {
+        sink.consume(approximateSeparation.apply(run++));
+    }
+
+    @Benchmark
+    public void pathToCenter(Blackhole sink) {
+        sink.consume(pathToCenter.apply(run++));
+    }
+
+    @Benchmark
+    public void separationRange(Blackhole sink) {
+        sink.consume(separationRange.apply(run++));
+    }
+
+    @Benchmark
+    public void mapGraphSearch(Blackhole sink) {
+        sink.consume(mapGraphSearch.apply(run++));
+    }
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Single-source searches, path queries and separation statistics from pseudo-random sources, on the movie data
+ * and on synthetic scale-free graphs well beyond its size. Sampled, so JMH reports latency percentiles; run with
+ * -prof gc for the bytes allocated per operation.
+ * @author William Toth and Christopher Long
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmarks {
+    @Param({"co-stars", "actor-movie", "R-MAT", "Barabasi-Albert"})
+    public String graph;
+
+    @Param("18")
+    public int scale; //log2 of the number of vertices of the synthetic graphs
+
+    @Param("PS4")
+    public String data; //directory holding the movie data
+
+    private IntFunction<?> bfs, bfsTopDown, separationStats, bidirectionalPath, topCenters;
+    private int run; //operations so far, so each starts from the next source
+
+    @Setup(Level.Trial)
+    public void load() throws Exception {
+        Map<String, IntFunction<?>> operations = Workloads.of("traversals", graph, data, scale);
+        bfs = operations.get("bfs");
+        bfsTopDown = operations.get("bfs top down");
+        separationStats = operations.get("separation stats");
+        bidirectionalPath = operations.get("bidirectional path");
+        topCenters = operations.get("top centers");
+    }
+
+    @Benchmark
+    public void bfs(Blackhole sink) {
+        sink.consume(bfs.apply(run++));
+    }
+
+    @Benchmark
+    public void bfsTopDown(Blackhole sink) {
+        sink.consume(bfsTopDown.apply(run++));
+    }
+
+    @Benchmark
+    public void separationStats(Blackhole sink) {
+        sink.consume(separationStats.apply(run++));
+    }
+
+    @Benchmark
+    public void bidirectionalPath(Blackhole sink) {
+        sink.consume(bidirectionalPath.apply(run++));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public void topCenters(Blackhole sink) {
+        sink.consume(topCenters.apply(run++));
+    }
+}
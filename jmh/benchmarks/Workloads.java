@@ -0,0 +1,34 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Reaches BenchmarkWorkloads, which is in the default package with the code it measures and so can't be imported.
+ * Each lookup happens once per trial, in setup, so the measured calls don't go through reflection.
+ * @author William Toth and Christopher Long
+ */
+final class Workloads {
+    private Workloads() {
+    }
+
+    /**
+     * Calls a static method of BenchmarkWorkloads that takes only strings and ints
+     * @param method
+     * @param args
+     * @return the operations it returns, by name
+     * @throws Exception whatever the method throws
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, IntFunction<?>> of(String method, Object... args) throws Exception {
+        Class<?>[] types = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) types[i] = args[i] instanceof Integer ? int.class : args[i].getClass();
+        try {
+            return (Map<String, IntFunction<?>>) Class.forName("BenchmarkWorkloads").getMethod(method, types).invoke(null, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+}